@@ -0,0 +1,358 @@
+package business;
+
+import presentation.Controller;
+import presentation.ParsedCommand;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class accepts command lines over TCP, in the same text format as the command files, and executes them through
+ * {@link Starter#executeCommand(ParsedCommand)}. The sockets are handled by a single thread with non-blocking NIO. The
+ * commands of a connection are executed in order, one at a time, on a bounded pool of worker threads, so different
+ * connections run concurrently. For every command the server answers with a line holding its result
+ */
+public class CommandServer {
+
+    /**
+     * Logger object used for logging possible errors
+     */
+    private static final Logger LOGGER = Logger.getLogger(CommandServer.class.getName());
+    /**
+     * The number of worker threads executing commands
+     */
+    private static final int WORKERS = Integer.getInteger("shopdb.server.workers", Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * The number of commands of a connection waiting for execution above which the server stops reading from it
+     */
+    private static final int MAX_PENDING = Integer.getInteger("shopdb.server.maxPending", 256);
+    /**
+     * The size of the buffer used for reading from a connection
+     */
+    private static final int BUFFER_SIZE = 1 << 14;
+    /**
+     * The maximum length of a line, in bytes. A longer line is discarded and answered with an error
+     */
+    private static final int MAX_LINE = Integer.getInteger("shopdb.server.maxLine", 8192);
+
+    /**
+     * The executor of the commands
+     */
+    private final Starter starter;
+    /**
+     * The port the server listens on
+     */
+    private final int port;
+    /**
+     * The selector of the server channel and of the connections
+     */
+    private Selector selector;
+    /**
+     * The worker threads executing commands
+     */
+    private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+    /**
+     * The connections whose interest set must be updated by the selector thread
+     */
+    private final Queue<Session> changed = new ConcurrentLinkedQueue<>();
+    /**
+     * True while the server is running
+     */
+    private volatile boolean running;
+
+    /**
+     * The constructor initializes the server without opening the port
+     * @param starter The executor of the commands
+     * @param port The port to listen on, 0 for any free port
+     */
+    public CommandServer(Starter starter, int port) {
+        LOGGER.setLevel(Level.WARNING);
+        this.starter = starter;
+        this.port = port;
+    }
+
+    /**
+     * Method used for running the server on the current thread, until {@link #stop()} is called
+     * @throws IOException If the port could not be opened
+     */
+    public void run() throws IOException {
+        selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        try {
+            while(running) {
+                selector.select();
+                Session session;
+                while((session = changed.poll()) != null) session.updateInterest();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) continue;
+                    if(key.isAcceptable()) accept(server);
+                    else handle(key);
+                }
+            }
+        } finally {
+            workers.shutdown();
+            for(SelectionKey key : selector.keys()) key.channel().close();
+            selector.close();
+        }
+    }
+
+    /**
+     * Method used for stopping the server. It can be called from any thread
+     */
+    public void stop() {
+        running = false;
+        if(selector != null) selector.wakeup();
+    }
+
+    /**
+     * Method used for accepting a new connection
+     * @param server The server channel
+     * @throws IOException If the connection could not be registered
+     */
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if(channel == null) return;
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Session(key));
+    }
+
+    /**
+     * Method used for reading from and writing to a connection
+     * @param key The key of the connection
+     */
+    private void handle(SelectionKey key) {
+        Session session = (Session) key.attachment();
+        try {
+            if(key.isReadable()) session.read();
+            if(key.isValid() && key.isWritable()) session.write();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to access the connection", e);
+            session.close();
+        }
+    }
+
+    /**
+     * The state of a connection: the partial line read, the commands waiting for execution and the responses waiting
+     * to be sent
+     */
+    private class Session {
+        /**
+         * The key of the connection
+         */
+        private final SelectionKey key;
+        /**
+         * The channel of the connection
+         */
+        private final SocketChannel channel;
+        /**
+         * The buffer used for reading
+         */
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        /**
+         * The bytes of the line being read
+         */
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        /**
+         * True while the rest of a line longer than {@link #MAX_LINE} is skipped
+         */
+        private boolean skipping;
+        /**
+         * The controller used for decoding the lines of this connection
+         */
+        private final Controller controller = new Controller();
+        /**
+         * The commands waiting for execution, guarded by the session
+         */
+        private final Queue<Object> pending = new ArrayDeque<>();
+        /**
+         * True while a worker executes the commands of this connection, guarded by the session
+         */
+        private boolean executing;
+        /**
+         * The responses waiting to be sent
+         */
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        /**
+         * True if the client closed its side of the connection
+         */
+        private volatile boolean inputClosed;
+
+        private Session(SelectionKey key) {
+            this.key = key;
+            this.channel = (SocketChannel) key.channel();
+        }
+
+        /**
+         * Method used for reading the available bytes and queueing the complete lines
+         * @throws IOException If the connection could not be read
+         */
+        private void read() throws IOException {
+            int read = channel.read(input);
+            if(read == -1) {
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                line.reset();
+                if(skipping) queue("ERROR line longer than " + MAX_LINE + " bytes");
+                else if(!text.isEmpty()) submit(text);
+                inputClosed = true;
+                updateInterest();
+                return;
+            }
+            input.flip();
+            while(input.hasRemaining()) {
+                byte next = input.get();
+                if(next != '\n') {
+                    if(skipping) continue;
+                    if(line.size() < MAX_LINE) {
+                        line.write(next);
+                        continue;
+                    }
+                    line.reset();
+                    skipping = true;
+                    continue;
+                }
+                if(skipping) {
+                    skipping = false;
+                    queue("ERROR line longer than " + MAX_LINE + " bytes");
+                    continue;
+                }
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                line.reset();
+                if(!text.isEmpty()) submit(text);
+            }
+            input.clear();
+        }
+
+        /**
+         * Method used for decoding a line and queueing the command, or an error response if the line is not a valid
+         * command. The response order always follows the order of the lines
+         * @param text The line to be decoded
+         */
+        private void submit(String text) {
+            Object item;
+            try {
+                item = controller.parse(text) ? ParsedCommand.of(controller) : "ERROR unknown command: " + text;
+            } catch (RuntimeException e) {
+                item = "ERROR invalid command: " + text;
+            }
+            queue(item);
+        }
+
+        /**
+         * Method used for queueing a command, or the response of a line which is not a command, after the items of the
+         * previous lines
+         * @param item The command, or the response
+         */
+        private void queue(Object item) {
+            boolean start;
+            synchronized (this) {
+                pending.add(item);
+                start = !executing;
+                executing = true;
+            }
+            if(start) workers.execute(this::drain);
+            updateInterest();
+        }
+
+        /**
+         * Method used by a worker for executing the pending commands of the connection, one at a time
+         */
+        private void drain() {
+            while(true) {
+                Object item;
+                synchronized (this) {
+                    item = pending.poll();
+                    if(item == null) {
+                        executing = false;
+                        break;
+                    }
+                }
+                String response;
+                if(item instanceof ParsedCommand) {
+                    try {
+                        response = starter.executeCommand((ParsedCommand) item);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "The command could not be executed", e);
+                        response = "ERROR " + e;
+                    }
+                } else {
+                    response = (String) item;
+                }
+                output.add(ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.UTF_8)));
+                changed.add(this);
+                selector.wakeup();
+            }
+            changed.add(this);
+            selector.wakeup();
+        }
+
+        /**
+         * Method used for sending the queued responses
+         * @throws IOException If the connection could not be written
+         */
+        private void write() throws IOException {
+            ByteBuffer buffer;
+            while((buffer = output.peek()) != null) {
+                channel.write(buffer);
+                if(buffer.hasRemaining()) break;
+                output.poll();
+            }
+            updateInterest();
+        }
+
+        /**
+         * Method used for updating the interest set of the connection: reading stops while too many commands are
+         * waiting, writing is requested while responses are waiting. The connection is closed when the client closed
+         * its side and every response was sent. Called only by the selector thread
+         */
+        private void updateInterest() {
+            if(!key.isValid()) return;
+            int waiting;
+            synchronized (this) {
+                waiting = pending.size() + (executing ? 1 : 0);
+            }
+            if(inputClosed && waiting == 0 && output.isEmpty()) {
+                close();
+                return;
+            }
+            int interest = 0;
+            if(!inputClosed && waiting < MAX_PENDING) interest |= SelectionKey.OP_READ;
+            if(!output.isEmpty()) interest |= SelectionKey.OP_WRITE;
+            key.interestOps(interest);
+        }
+
+        /**
+         * Method used for closing the connection
+         */
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to close the connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package business;
+
+import dbaccess.DBConnection;
+import model.Checkpoint;
+import presentation.BinaryCommandReader;
+import presentation.CommandSource;
+import presentation.Controller;
+import presentation.ParallelCommandReader;
+import presentation.ParsedCommand;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class executes the commands of one input file through a shared {@link Starter}. Several processors can run at
+ * once, each on its own thread, with its own command source, transaction and checkpoint
+ */
+public class FileProcessor implements Runnable {
+
+    /**
+     * The logger used for generating messages when an exception occurs
+     */
+    private static final Logger LOGGER = Logger.getLogger(FileProcessor.class.getName());
+
+    /**
+     * The number of commands executed in a transaction before a checkpoint is saved. If it is 0, checkpoints are
+     * disabled and every statement is committed on its own
+     */
+    private static final int CHECKPOINT_INTERVAL = Integer.getInteger("shopdb.checkpoint.interval", 0);
+
+    /**
+     * The size, in bytes, from which a text input file is parsed on several threads
+     */
+    private static final long PARALLEL_PARSE_THRESHOLD = Long.getLong("shopdb.parse.parallelThreshold", 1L << 24);
+
+    /**
+     * The executor of the commands
+     */
+    private final Starter starter;
+
+    /**
+     * The input file
+     */
+    private final File input;
+
+    /**
+     * The source of the commands, reading either text or binary commands
+     */
+    private final CommandSource controller;
+
+    /**
+     * The checkpoint of the input file
+     */
+    private final Checkpoint checkpoint;
+
+    /**
+     * True if the checkpoint of the input file is already stored in the database
+     */
+    private boolean checkpointExists;
+
+    /**
+     * The number of commands executed since the last checkpoint
+     */
+    private int uncheckpointed;
+
+    /**
+     * The number of executed commands
+     */
+    private long commandCount;
+
+    /**
+     * The time spent executing the commands, in nanoseconds
+     */
+    private long elapsedNanos;
+
+    /**
+     * The constructor opens the input file. In resume mode the commands are read starting from the last checkpoint of
+     * the input file and the counters of the starter are restored from it
+     * @param starter The executor of the commands
+     * @param input The input file with commands
+     * @param resume True if the processing resumes from the last checkpoint
+     */
+    public FileProcessor(Starter starter, File input, boolean resume) {
+        this.starter = starter;
+        this.input = input;
+        checkpoint = new Checkpoint();
+        checkpoint.setPrimaryKey(input.getAbsolutePath());
+        Checkpoint saved = CHECKPOINT_INTERVAL > 0 || resume ? starter.getCheckpointDAO().findByFileName(input.getAbsolutePath()) : null;
+        checkpointExists = saved != null;
+        if(resume && saved != null) {
+            starter.restoreCounters(saved);
+            controller = openSource(input, saved.getByteOffset());
+            LOGGER.log(Level.INFO, "Resuming " + input + " from byte " + saved.getByteOffset());
+        } else {
+            if(resume) LOGGER.log(Level.WARNING, "No checkpoint of " + input + " exists, it is processed from the start" +
+                    (CHECKPOINT_INTERVAL > 0 ? "" : "; checkpoints are written only if shopdb.checkpoint.interval is above 0"));
+            controller = openSource(input, 0);
+        }
+    }
+
+    /**
+     * Method used for opening the command source matching the format of the input file. Large text files are parsed
+     * on several threads by a {@link ParallelCommandReader}, if more than one thread is available
+     * @param input The input file with commands, in text or binary format
+     * @param offset The byte offset of the first command to be read, 0 for the start of the file
+     * @return Returns the command source
+     */
+    private static CommandSource openSource(File input, long offset) {
+        if(BinaryCommandReader.isBinary(input)) return new BinaryCommandReader(input, offset);
+        if(ParallelCommandReader.getParallelism() > 1 && input.length() - offset >= PARALLEL_PARSE_THRESHOLD) return new ParallelCommandReader(input, offset);
+        return new Controller(input, offset);
+    }
+
+    /**
+     * Method used for saving the checkpoint: the stock changes of the executed commands, the byte offset of the next
+     * command and the counters are written in the transaction of the executed commands, which is then committed
+     * @throws IllegalStateException If the stock changes or the checkpoint could not be written, or the transaction
+     * could not be committed
+     */
+    private void saveCheckpoint() {
+        if(!starter.flushInventory()) {
+            DBConnection.rollbackTransaction();
+            throw new IllegalStateException("Unable to write the stock changes of " + input + " up to byte " + controller.getPosition());
+        }
+        checkpoint.setByteOffset(controller.getPosition());
+        starter.storeCounters(checkpoint);
+        if(!starter.getCheckpointDAO().save(checkpoint, checkpointExists)) {
+            DBConnection.rollbackTransaction();
+            throw new IllegalStateException("Unable to write the checkpoint of " + input + " at byte " + controller.getPosition());
+        }
+        try {
+            DBConnection.commitTransaction();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to commit the commands of " + input + " up to byte " + controller.getPosition(), e);
+        }
+        checkpointExists = true;
+        uncheckpointed = 0;
+    }
+
+    /**
+     * This method will take all commands from the input file and execute them. If checkpoints are enabled, the
+     * commands are executed in transactions of {@link #CHECKPOINT_INTERVAL} commands, each ending with a checkpoint
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            while(controller.hasNext()) {
+                if(CHECKPOINT_INTERVAL > 0 && !DBConnection.inTransaction()) DBConnection.beginTransaction();
+                controller.readCommand();
+                try {
+                    starter.executeCommand(ParsedCommand.of(controller));
+                } catch (RuntimeException e) {
+                    DBConnection.rollbackTransaction();
+                    throw e;
+                }
+                commandCount++;
+                starter.reportFirstCommand();
+                if(CHECKPOINT_INTERVAL > 0 && ++uncheckpointed == CHECKPOINT_INTERVAL) saveCheckpoint();
+            }
+            if(DBConnection.inTransaction()) saveCheckpoint();
+        } finally {
+            controller.close();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return Returns the input file
+     */
+    public File getInput() {
+        return input;
+    }
+
+    /**
+     * @return Returns the number of executed commands
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @return Returns the time spent executing the commands, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
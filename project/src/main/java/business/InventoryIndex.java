@@ -0,0 +1,388 @@
+package business;
+
+import dao.ProductDAO;
+import dbaccess.DBConnection;
+import model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class keeps the id, the quantity and the price of every product in memory, in primitive arrays indexed by the
+ * slot of the product name in an open addressing table, so the stock of an order is checked and taken without a query
+ * and without boxing. If several rows have the same name, the index keeps the one with the lowest primary key, the one
+ * found by {@link ProductDAO#findByProductName(String)}. The index is the owner of the quantities: every change is applied here first and written to the
+ * products table through a {@link QuantityWriteBehind} buffer. The products table must not be changed by other processes while the index is in
+ * use. The lookups share a read lock and the quantities are changed with compare-and-set, so orders for different
+ * products do not wait for each other; only adding and removing products takes the write lock
+ */
+public class InventoryIndex {
+
+    /**
+     * The marker of a slot whose product was removed, so the probing continues past it
+     */
+    private static final String REMOVED = new String("");
+
+    /**
+     * The initial number of slots
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The data access object for Product
+     */
+    private final ProductDAO productDAO;
+
+    /**
+     * The buffer writing the changed quantities to the database
+     */
+    private final QuantityWriteBehind writer;
+
+    /**
+     * The lock of the slot arrays: shared by the lookups, exclusive when products are added or removed
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * The name of the product of every slot, null for a free slot
+     */
+    private String[] names;
+
+    /**
+     * The primary key of the product of every slot
+     */
+    private int[] ids;
+
+    /**
+     * The quantity of the product of every slot
+     */
+    private AtomicIntegerArray quantities;
+
+    /**
+     * The price of the product of every slot
+     */
+    private double[] prices;
+
+    /**
+     * The number of products, plus the number of removed slots
+     */
+    private int used;
+
+    /**
+     * True once the products were loaded from the database
+     */
+    private volatile boolean loaded;
+
+    /**
+     * The constructor initializes the fields. The products are loaded on the first use of the index
+     * @param productDAO The data access object for Product
+     */
+    public InventoryIndex(ProductDAO productDAO) {
+        this.productDAO = productDAO;
+        writer = new QuantityWriteBehind(productDAO);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * The constructor creates an index of the given products, without reading the products table
+     * @param productDAO The data access object for Product
+     * @param products The products, with their primary keys
+     */
+    public InventoryIndex(ProductDAO productDAO, List<Product> products) {
+        this(productDAO);
+        for(Product product : products) put(product);
+        loaded = true;
+    }
+
+    /**
+     * Method used for allocating empty slot arrays
+     * @param capacity The number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        names = new String[capacity];
+        ids = new int[capacity];
+        quantities = new AtomicIntegerArray(capacity);
+        prices = new double[capacity];
+        used = 0;
+    }
+
+    /**
+     * Method used for loading the products from the database, if they were not loaded yet
+     * @return Returns true if the products are loaded
+     */
+    private boolean ensureLoaded() {
+        if(loaded) return true;
+        long stamp = lock.writeLock();
+        try {
+            if(loaded) return true;
+            ArrayList<Product> products = productDAO.findAll();
+            if(products == null) return false;
+            for(Product product : products) put(product);
+            loaded = true;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Method used for loading the products, so the first order does not pay for it
+     */
+    public void warmUp() {
+        ensureLoaded();
+    }
+
+    /**
+     * Method used for finding the slot of a product name. The caller holds the lock
+     * @param name The name of the product
+     * @return Returns the slot of the product, or -1 if the index has no such product
+     */
+    private int find(String name) {
+        int mask = names.length - 1;
+        int hash = name.hashCode();
+        for(int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            String current = names[slot];
+            if(current == null) return -1;
+            if(current != REMOVED && current.equals(name)) return slot;
+        }
+    }
+
+    /**
+     * Method used for finding the slot where a product name is stored or can be stored: the slot of the name, else
+     * the first removed slot on the way, else the free slot ending the probing. The caller holds the write lock
+     * @param name The name of the product
+     * @return Returns the slot
+     */
+    private int findForInsert(String name) {
+        int mask = names.length - 1;
+        int hash = name.hashCode();
+        int removed = -1;
+        for(int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            String current = names[slot];
+            if(current == null) return removed >= 0 ? removed : slot;
+            if(current == REMOVED) {
+                if(removed < 0) removed = slot;
+            } else if(current.equals(name)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Method used for doubling the slots when more than half of them are used, dropping the removed slots. The caller
+     * holds the write lock
+     */
+    private void growIfNeeded() {
+        if(2 * (used + 1) <= names.length) return;
+        String[] oldNames = names;
+        int[] oldIds = ids;
+        AtomicIntegerArray oldQuantities = quantities;
+        double[] oldPrices = prices;
+        allocate(oldNames.length * 2);
+        for(int i = 0; i < oldNames.length; i++) {
+            if(oldNames[i] == null || oldNames[i] == REMOVED) continue;
+            int slot = findForInsert(oldNames[i]);
+            names[slot] = oldNames[i];
+            ids[slot] = oldIds[i];
+            quantities.set(slot, oldQuantities.get(i));
+            prices[slot] = oldPrices[i];
+            used++;
+        }
+    }
+
+    /**
+     * Method used for adding a product to the index, unless the index has a product with the same name and a lower
+     * primary key. The caller holds the write lock
+     * @param product The product, with its primary key
+     */
+    private void put(Product product) {
+        growIfNeeded();
+        int slot = findForInsert(product.getProductName());
+        if(names[slot] != null && names[slot] != REMOVED && ids[slot] < product.getPrimaryKey()) return;
+        if(names[slot] == null) used++;
+        names[slot] = product.getProductName();
+        ids[slot] = product.getPrimaryKey();
+        quantities.set(slot, product.getQuantity());
+        prices[slot] = product.getPrice();
+    }
+
+    /**
+     * Method used for adding a product inserted in the database to the index
+     * @param product The inserted product, with its primary key
+     */
+    public void add(Product product) {
+        if(!loaded || product.getPrimaryKey() == null) return;
+        long stamp = lock.writeLock();
+        try {
+            put(product);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Method used for removing a product deleted from the database from the index
+     * @param name The name of the product
+     */
+    public void remove(String name) {
+        if(!loaded) return;
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(name);
+            if(slot >= 0) names[slot] = REMOVED;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Method used for checking if the index has a product
+     * @param name The name of the product
+     * @return Returns true if the product exists
+     */
+    public boolean contains(String name) {
+        if(!ensureLoaded()) return false;
+        long stamp = lock.readLock();
+        try {
+            return find(name) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Method used for getting the quantity of a product
+     * @param name The name of the product
+     * @return Returns the quantity in stock, or -1 if the product does not exist
+     */
+    public int getQuantity(String name) {
+        if(!ensureLoaded()) return -1;
+        long stamp = lock.readLock();
+        try {
+            int slot = find(name);
+            return slot < 0 ? -1 : quantities.get(slot);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Method used for getting the primary key of a product
+     * @param name The name of the product
+     * @return Returns the primary key, or -1 if the product does not exist
+     */
+    public int getId(String name) {
+        if(!ensureLoaded()) return -1;
+        long stamp = lock.readLock();
+        try {
+            int slot = find(name);
+            return slot < 0 ? -1 : ids[slot];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Method used for taking a quantity of a product out of the stock, if there is enough of it. The change is kept in
+     * memory until it is {@link #write(int, int) written}
+     * @param name The name of the product
+     * @param quantity The ordered quantity
+     * @return Returns the reservation of the quantity, or null if the product does not exist or is under-stocked
+     */
+    StockReservationService.Reservation take(String name, int quantity) {
+        if(!ensureLoaded()) return null;
+        long stamp = lock.readLock();
+        try {
+            int slot = find(name);
+            if(slot < 0) return null;
+            int stock;
+            do {
+                stock = quantities.get(slot);
+                if(stock < quantity) return null;
+            } while(!quantities.compareAndSet(slot, stock, stock - quantity));
+            return new StockReservationService.Reservation(name, ids[slot], prices[slot], quantity);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Method used for putting a quantity of a product back into the stock, such as the quantity of a released
+     * reservation. The change is kept in memory only
+     * @param name The name of the product
+     * @param quantity The quantity given back
+     * @return Returns the new quantity, or -1 if the product does not exist
+     */
+    int give(String name, int quantity) {
+        if(!ensureLoaded()) return -1;
+        long stamp = lock.readLock();
+        try {
+            int slot = find(name);
+            return slot < 0 ? -1 : quantities.addAndGet(slot, quantity);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Method used for adding a quantity of a product to the stock. The change is written to the database through the
+     * buffer. If the current thread has a transaction and it is rolled back, the quantity is taken out again
+     * @param name The name of the product
+     * @param productId The primary key of the product
+     * @param quantity The added quantity
+     * @return Returns the new quantity, or -1 if the index has no product with that name and primary key
+     */
+    public int restock(String name, int productId, int quantity) {
+        if(!ensureLoaded()) return -1;
+        int stock;
+        long stamp = lock.readLock();
+        try {
+            int slot = find(name);
+            if(slot < 0 || ids[slot] != productId) return -1;
+            stock = quantities.addAndGet(slot, quantity);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        write(productId, quantity);
+        if(DBConnection.inTransaction()) DBConnection.afterTransaction(committed -> {
+            if(!committed) give(name, -quantity);
+        });
+        return stock;
+    }
+
+    /**
+     * Method used for writing a change of the quantity of a product, already applied in memory, to the database
+     * @param productId The primary key of the product
+     * @param delta The change of the quantity
+     */
+    void write(int productId, int delta) {
+        writer.add(productId, delta);
+    }
+
+    /**
+     * Method used for writing the changes made by the transaction of the current thread on the connection of the
+     * transaction, so they are committed with it
+     * @return Returns true if every change of the transaction is written
+     */
+    public boolean flushTransaction() {
+        return writer.flushTransaction();
+    }
+
+    /**
+     * Method used for waiting until the changes made so far are written to the database, such as before a report of
+     * the products. The changes of the transaction of the current thread are written in the transaction
+     */
+    public void flush() {
+        writer.flushTransaction();
+        writer.flush();
+    }
+
+    /**
+     * Method used for writing the pending changes and stopping the background writes
+     */
+    public void close() {
+        writer.close();
+    }
+}
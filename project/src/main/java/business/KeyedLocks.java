@@ -0,0 +1,67 @@
+package business;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class orders the commands touching the same client or product when they are executed by several threads. The
+ * names are hashed to a fixed number of lock stripes, so commands on different names usually run concurrently while
+ * commands on the same name run one at a time. The stripes of a command are always acquired in increasing order, so
+ * two commands locking several names cannot deadlock
+ */
+public class KeyedLocks {
+
+    /**
+     * The lock stripes
+     */
+    private final ReentrantLock[] stripes;
+
+    /**
+     * The constructor creates the lock stripes
+     * @param count The number of stripes, rounded up to a power of two
+     */
+    public KeyedLocks(int count) {
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for(int i = 0; i < size; i++) stripes[i] = new ReentrantLock();
+    }
+
+    /**
+     * Method used for getting the stripe of a key
+     * @param key The key, such as the name of a client or of a product
+     * @return Returns the index of the stripe
+     */
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * Method used for locking the stripes of the given keys. The null keys are ignored
+     * @param keys The keys to be locked
+     * @return Returns the indexes of the locked stripes, to be given to {@link #unlock(int[])}
+     */
+    public int[] lock(String... keys) {
+        int[] locked = new int[keys.length];
+        int count = 0;
+        for(String key : keys) if(key != null) locked[count++] = stripeOf(key);
+        locked = Arrays.copyOf(locked, count);
+        Arrays.sort(locked);
+        for(int i = 0; i < locked.length; i++) {
+            if(i > 0 && locked[i] == locked[i - 1]) continue;
+            stripes[locked[i]].lock();
+        }
+        return locked;
+    }
+
+    /**
+     * Method used for unlocking the stripes locked by {@link #lock(String...)}
+     * @param locked The indexes of the locked stripes
+     */
+    public void unlock(int[] locked) {
+        for(int i = locked.length - 1; i >= 0; i--) {
+            if(i > 0 && locked[i] == locked[i - 1]) continue;
+            stripes[locked[i]].unlock();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package business;
+
+import dao.OrderDAO;
+import model.order.OrderHelper;
+import presentation.ReportGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class generates the incremental order reports: every delta report holds only the item orders added since the
+ * previous order report. The highest reported item order id of every shard is the watermark, kept in a properties file
+ * so it survives restarts. The ids are given out when the rows are inserted, not when they are committed, so a row can
+ * become visible after a row with a higher id was reported: every delta report reads again the last
+ * {@link #SAFETY_WINDOW} ids below the watermark and skips the ids already reported, which are saved with it. A row
+ * committed later than that is only shown by a full report, generated instead of every {@link #COMPACT_EVERY}th delta
+ * report, which also shows the rows changed or deleted since they were reported
+ */
+public class OrderDeltaReport {
+
+    /**
+     * The logger used for generating messages when an exception occurs
+     */
+    private static final Logger LOGGER = Logger.getLogger(OrderDeltaReport.class.getName());
+
+    /**
+     * The file holding the watermark
+     */
+    private static final Path WATERMARK_FILE = Paths.get(System.getProperty("shopdb.report.watermarkFile", "order-report.properties"));
+
+    /**
+     * The number of delta reports after which a full report is generated, 0 for never
+     */
+    private static final int COMPACT_EVERY = Integer.getInteger("shopdb.report.compactEvery", 20);
+
+    /**
+     * The number of item orders of a shard below the watermark which are read again by every delta report
+     */
+    private static final int SAFETY_WINDOW = Integer.getInteger("shopdb.report.safetyWindow", 1000);
+
+    /**
+     * The data access object for Order
+     */
+    private final OrderDAO orderDAO;
+
+    /**
+     * The report generator used for output operations
+     */
+    private final ReportGenerator reportGenerator;
+
+    /**
+     * The id of the last reported item order of every shard, null until the watermark file is read
+     */
+    private int[] lastIds;
+
+    /**
+     * The reported item order ids of every shard inside the safety window below its watermark
+     */
+    private TreeSet<Integer>[] reportedIds;
+
+    /**
+     * The number of delta reports generated since the last full report
+     */
+    private int deltaCount;
+
+    /**
+     * The constructor initializes the fields. The watermark is read on the first report
+     * @param orderDAO The data access object for Order
+     * @param reportGenerator The report generator used for output operations
+     */
+    public OrderDeltaReport(OrderDAO orderDAO, ReportGenerator reportGenerator) {
+        this.orderDAO = orderDAO;
+        this.reportGenerator = reportGenerator;
+    }
+
+    /**
+     * Method used for generating the next order report: a delta report with the item orders added since the previous
+     * one, or a full report if it is time for a compaction
+     * @param reportName The name of the report to be generated
+     * @return Returns true if the report was generated and the watermark saved
+     */
+    public synchronized boolean generate(String reportName) {
+        if(lastIds == null) load();
+        boolean compact = COMPACT_EVERY > 0 && deltaCount >= COMPACT_EVERY;
+        int[] afterIds = new int[lastIds.length];
+        if(!compact) for(int i = 0; i < afterIds.length; i++) afterIds[i] = Math.max(0, lastIds[i] - getWindow());
+        ArrayList<OrderHelper> rows = orderDAO.getOrderHelperRowsAfter(afterIds);
+        ArrayList<String> columns = orderDAO.getOrderHelperColumns();
+        if(rows == null || columns == null) return false;
+        int[] ids = compact ? new int[lastIds.length] : lastIds.clone();
+        TreeSet<Integer>[] reported = compact ? newIdSets(lastIds.length) : copy(reportedIds);
+        ArrayList<OrderHelper> delta = new ArrayList<>();
+        for(OrderHelper row : rows) {
+            int slot = orderDAO.getShardSlot(row.getPrimaryKey());
+            if(!compact && (row.getPrimaryKey() <= lastIds[slot] - getWindow() || reported[slot].contains(row.getPrimaryKey())))
+                continue;
+            delta.add(row);
+            reported[slot].add(row.getPrimaryKey());
+            ids[slot] = Math.max(ids[slot], row.getPrimaryKey());
+        }
+        for(int i = 0; i < ids.length; i++) reported[i].headSet(ids[i] - getWindow(), true).clear();
+        if(!reportGenerator.generateReport(reportName, delta, columns)) return false;
+        lastIds = ids;
+        reportedIds = reported;
+        deltaCount = compact ? 0 : deltaCount + 1;
+        return save();
+    }
+
+    /**
+     * Method used for getting the distance in ids of the safety window. On a shard the ids grow by the number of shards
+     * @return Returns the distance
+     */
+    private int getWindow() {
+        return SAFETY_WINDOW * lastIds.length;
+    }
+
+    /**
+     * Method used for creating empty sets of ids
+     * @param count The number of sets
+     * @return Returns the sets
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static TreeSet<Integer>[] newIdSets(int count) {
+        TreeSet<Integer>[] sets = new TreeSet[count];
+        for(int i = 0; i < count; i++) sets[i] = new TreeSet<>();
+        return sets;
+    }
+
+    /**
+     * Method used for copying sets of ids
+     * @param sets The sets
+     * @return Returns the copies
+     */
+    private static TreeSet<Integer>[] copy(TreeSet<Integer>[] sets) {
+        TreeSet<Integer>[] copies = newIdSets(sets.length);
+        for(int i = 0; i < sets.length; i++) copies[i].addAll(sets[i]);
+        return copies;
+    }
+
+    /**
+     * Method used for reading the watermark file. A missing file, or a file written for another number of shards,
+     * starts from the first item order. A file without the reported ids takes every id of the safety window as reported
+     */
+    private void load() {
+        lastIds = new int[orderDAO.getShardSlots()];
+        reportedIds = newIdSets(lastIds.length);
+        deltaCount = 0;
+        if(!Files.exists(WATERMARK_FILE)) return;
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(WATERMARK_FILE)) {
+            properties.load(input);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The watermark of the order reports could not be read", e);
+            return;
+        }
+        if(Integer.parseInt(properties.getProperty("shards", "1")) != lastIds.length) {
+            LOGGER.log(Level.WARNING, "The watermark of the order reports was saved for another number of shards");
+            return;
+        }
+        for(int i = 0; i < lastIds.length; i++) {
+            lastIds[i] = Integer.parseInt(properties.getProperty("lastId." + i, "0"));
+            String reported = properties.getProperty("reported." + i);
+            if(reported == null) {
+                for(int id = Math.max(1, lastIds[i] - getWindow() + 1); id <= lastIds[i]; id++) reportedIds[i].add(id);
+            } else if(!reported.isEmpty()) {
+                for(String id : reported.split(",")) reportedIds[i].add(Integer.valueOf(id));
+            }
+        }
+        deltaCount = Integer.parseInt(properties.getProperty("deltaCount", "0"));
+    }
+
+    /**
+     * Method used for writing the watermark file. The file is replaced atomically, so it is never left half written
+     * @return Returns true if the file was written
+     */
+    private boolean save() {
+        Properties properties = new Properties();
+        properties.setProperty("shards", String.valueOf(lastIds.length));
+        for(int i = 0; i < lastIds.length; i++) {
+            properties.setProperty("lastId." + i, String.valueOf(lastIds[i]));
+            StringBuilder reported = new StringBuilder();
+            for(Integer id : reportedIds[i]) reported.append(reported.length() == 0 ? "" : ",").append(id);
+            properties.setProperty("reported." + i, reported.toString());
+        }
+        properties.setProperty("deltaCount", String.valueOf(deltaCount));
+        Path temporary = WATERMARK_FILE.resolveSibling(WATERMARK_FILE.getFileName() + ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                properties.store(output, "Watermark of the incremental order reports");
+            }
+            Files.move(temporary, WATERMARK_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The watermark of the order reports could not be saved", e);
+            return false;
+        }
+    }
+}
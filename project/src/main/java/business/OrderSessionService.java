@@ -0,0 +1,157 @@
+package business;
+
+import dao.ClientDAO;
+import dao.OrderDAO;
+import dbaccess.DBConnection;
+import model.order.Order;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the open order of every client which ordered, by the primary key of the client, and the primary key
+ * of every client looked up, by name, so the order of a repeat customer is found without a query. The entries are
+ * loaded on the first use and dropped when the client or the order is deleted, or when the transaction which changed
+ * them is rolled back. The commands of a client must be executed one at a time, as {@link Starter} does
+ */
+public class OrderSessionService {
+
+    /**
+     * The data access object for Client
+     */
+    private final ClientDAO clientDAO;
+
+    /**
+     * The data access object for Order
+     */
+    private final OrderDAO orderDAO;
+
+    /**
+     * The primary keys of the clients, by name
+     */
+    private final Map<String, Integer> clientIds = new ConcurrentHashMap<>();
+
+    /**
+     * The open order of every client, by the primary key of the client
+     */
+    private final Map<Integer, Order> orders = new ConcurrentHashMap<>();
+
+    /**
+     * The constructor initializes the fields
+     * @param clientDAO The data access object for Client
+     * @param orderDAO The data access object for Order
+     */
+    public OrderSessionService(ClientDAO clientDAO, OrderDAO orderDAO) {
+        this.clientDAO = clientDAO;
+        this.orderDAO = orderDAO;
+    }
+
+    /**
+     * Method used for getting the primary key of a client
+     * @param name The name of the client
+     * @return Returns the primary key, or null if there is no such client
+     */
+    public Integer getClientId(String name) {
+        Integer id = clientIds.get(name);
+        if(id != null) return id;
+        id = clientDAO.findIdByName(name);
+        if(id != null) clientIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * Method used for getting the open order of a client, creating it if the client has none
+     * @param clientId The primary key of the client
+     * @return Returns the order, or null if it could not be read or created
+     */
+    public Order getOrder(int clientId) {
+        Order order = orders.get(clientId);
+        if(order != null) return order;
+        ArrayList<Order> found = orderDAO.findByField("clientId", clientId);
+        if(found == null) return null;
+        if(found.size() > 0) {
+            order = found.get(0);
+        } else {
+            order = new Order();
+            order.setClientId(clientId);
+            if(!orderDAO.insert(order)) return null;
+            forgetOnRollback(clientId);
+        }
+        orders.put(clientId, order);
+        return order;
+    }
+
+    /**
+     * Method used for adding an amount to the total of the open order of a client
+     * @param clientId The primary key of the client
+     * @param amount The amount to be added
+     * @return Returns the order, or null if the total could not be written
+     */
+    public Order addToTotal(int clientId, double amount) {
+        Order order = getOrder(clientId);
+        if(order == null) return null;
+        order.setTotal(order.getTotal() + amount);
+        if(!orderDAO.update(order)) {
+            orders.remove(clientId);
+            return null;
+        }
+        forgetOnRollback(clientId);
+        return order;
+    }
+
+    /**
+     * Method used for getting the running total of the open order of a client, without a query if the order is known
+     * @param clientId The primary key of the client
+     * @return Returns the total, or 0 if the order could not be read
+     */
+    public double getTotal(int clientId) {
+        Order order = getOrder(clientId);
+        return order == null ? 0 : order.getTotal();
+    }
+
+    /**
+     * Method used for finding the open order of a client, without creating it
+     * @param clientId The primary key of the client
+     * @return Returns the order, or null if the client has none or it could not be read
+     */
+    public Order findOrder(int clientId) {
+        Order order = orders.get(clientId);
+        if(order != null) return order;
+        ArrayList<Order> found = orderDAO.findByField("clientId", clientId);
+        return found == null || found.size() == 0 ? null : found.get(0);
+    }
+
+    /**
+     * Method used for deleting the open order of a client, if it has one. The item orders of the order must be deleted
+     * first
+     * @param clientId The primary key of the client
+     * @return Returns true if the client has no open order left
+     */
+    public boolean deleteOrder(int clientId) {
+        Order order = findOrder(clientId);
+        orders.remove(clientId);
+        return order == null || orderDAO.delete(order);
+    }
+
+    /**
+     * Method used for dropping everything known about a client, when the client is deleted
+     * @param name The name of the client
+     */
+    public void forgetClient(String name) {
+        Integer id = clientIds.remove(name);
+        if(id != null) orders.remove(id);
+    }
+
+    /**
+     * Method used for dropping the order of a client if the transaction which changed it is rolled back, so it is
+     * read again from the database
+     * @param clientId The primary key of the client
+     */
+    private void forgetOnRollback(int clientId) {
+        if(!DBConnection.inTransaction()) return;
+        DBConnection.afterTransaction(committed -> {
+            if(!committed) orders.remove(clientId);
+        });
+    }
+}
@@ -0,0 +1,229 @@
+package business;
+
+import dao.ProductDAO;
+import dbaccess.DBConnection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class buffers the changes of the product quantities and writes them to the products table in batches. The
+ * changes of a product are added up, so a burst of orders for a hot product becomes a single
+ * "quantity = quantity + ?" update. The changes made outside a transaction go to a shared buffer, written by a
+ * background thread every {@link #FLUSH_INTERVAL} milliseconds, as soon as {@link #FLUSH_SIZE} products have changes,
+ * and on {@link #flush()}. If the durability is "commit", every such change is written before the command returns.
+ * The changes made inside a transaction are kept for that transaction only and written on its connection by
+ * {@link #flushTransaction()}, so they are committed or rolled back with it
+ */
+public class QuantityWriteBehind {
+
+    /**
+     * The logger used for generating messages when an exception occurs
+     */
+    private static final Logger LOGGER = Logger.getLogger(QuantityWriteBehind.class.getName());
+
+    /**
+     * The interval between two background writes, in milliseconds
+     */
+    private static final long FLUSH_INTERVAL = Long.getLong("shopdb.inventory.flushInterval", 200L);
+
+    /**
+     * The number of changed products from which the buffer is written at once
+     */
+    private static final int FLUSH_SIZE = Integer.getInteger("shopdb.inventory.flushSize", 1024);
+
+    /**
+     * True if the changes are written when they are committed, false if they are written in the background
+     */
+    private static final boolean FLUSH_ON_COMMIT = System.getProperty("shopdb.inventory.durability", "time").equalsIgnoreCase("commit");
+
+    /**
+     * The data access object for Product
+     */
+    private final ProductDAO productDAO;
+
+    /**
+     * The thread writing the buffer in the background
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The lock held while the buffer is written, so a flush returns only after the changes taken by another flush
+     * are written as well
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * The change of the quantity of every changed product, by primary key
+     */
+    private Map<Integer, int[]> pending = new HashMap<>();
+
+    /**
+     * The changes made by the transaction of the current thread and not written yet, by primary key. Null if the
+     * thread has no transaction or the transaction made no change
+     */
+    private final ThreadLocal<Map<Integer, int[]>> transactionChanges = new ThreadLocal<>();
+
+    /**
+     * The constructor starts the background writes
+     * @param productDAO The data access object for Product
+     */
+    public QuantityWriteBehind(ProductDAO productDAO) {
+        this.productDAO = productDAO;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushShared, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method used for adding a change of a quantity: to the changes of the transaction of the current thread if it
+     * has one, otherwise to the shared buffer
+     * @param productId The primary key of the product
+     * @param delta The change of the quantity, negative for the ordered quantities
+     */
+    public void add(int productId, int delta) {
+        if(DBConnection.inTransaction()) {
+            Map<Integer, int[]> changes = transactionChanges.get();
+            if(changes == null) {
+                changes = new HashMap<>();
+                transactionChanges.set(changes);
+                DBConnection.afterTransaction(this::endTransaction);
+            }
+            merge(changes, productId, delta);
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            merge(pending, productId, delta);
+            full = pending.size() >= FLUSH_SIZE;
+        }
+        if(FLUSH_ON_COMMIT) flush();
+        else if(full) scheduler.execute(this::flushShared);
+    }
+
+    /**
+     * Method used for adding a change to the change of a product
+     * @param changes The changes, by primary key
+     * @param productId The primary key of the product
+     * @param delta The change of the quantity
+     */
+    private static void merge(Map<Integer, int[]> changes, int productId, int delta) {
+        int[] change = changes.get(productId);
+        if(change == null) changes.put(productId, new int[]{delta});
+        else change[0] += delta;
+    }
+
+    /**
+     * Method used for writing the changes of the transaction of the current thread on the connection of the
+     * transaction, such as right before a checkpoint is saved in it. The changes which could not be written are kept
+     * @return Returns true if every change of the transaction is written
+     */
+    public boolean flushTransaction() {
+        Map<Integer, int[]> changes = transactionChanges.get();
+        if(changes == null || changes.isEmpty()) return true;
+        Map<Integer, int[]> failed = write(changes);
+        changes.clear();
+        changes.putAll(failed);
+        return failed.isEmpty();
+    }
+
+    /**
+     * Method used for dropping the changes of a finished transaction. The changes of a rolled back transaction are
+     * lost with it. A committed transaction should have no change left, see {@link #flushTransaction()}; if it has,
+     * they are moved to the shared buffer
+     * @param committed True if the transaction was committed
+     */
+    private void endTransaction(boolean committed) {
+        Map<Integer, int[]> changes = transactionChanges.get();
+        transactionChanges.remove();
+        if(!committed || changes == null || changes.isEmpty()) return;
+        LOGGER.log(Level.WARNING, changes.size() + " quantity changes were not written in their transaction and are written in the background");
+        for(Map.Entry<Integer, int[]> entry : changes.entrySet()) add(entry.getKey(), entry.getValue()[0]);
+    }
+
+    /**
+     * Method used for writing the shared buffer. The buffer is never written on the connection of a transaction: if
+     * the current thread has one, the background thread writes the buffer and this thread waits for it
+     */
+    public void flush() {
+        if(!DBConnection.inTransaction()) {
+            flushShared();
+            return;
+        }
+        try {
+            scheduler.submit(this::flushShared).get();
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "The quantity changes are not written, the writer is closed", e);
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "The quantity changes could not be written", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method used for writing the shared buffer on the current thread. The changes which could not be written are put
+     * back into the buffer and written by a later flush
+     */
+    private void flushShared() {
+        synchronized (flushLock) {
+            Map<Integer, int[]> changes;
+            synchronized (this) {
+                if(pending.isEmpty()) return;
+                changes = pending;
+                pending = new HashMap<>();
+            }
+            Map<Integer, int[]> failed = write(changes);
+            if(failed.isEmpty()) return;
+            LOGGER.log(Level.WARNING, failed.size() + " quantity changes could not be written and are kept for the next flush");
+            synchronized (this) {
+                for(Map.Entry<Integer, int[]> entry : failed.entrySet()) merge(pending, entry.getKey(), entry.getValue()[0]);
+            }
+        }
+    }
+
+    /**
+     * Method used for writing changes. The changes are relative, so only the changes which were not applied are
+     * returned for a retry; the applied ones are never written twice
+     * @param changes The changes, by primary key
+     * @return Returns the changes which were not applied
+     */
+    private Map<Integer, int[]> write(Map<Integer, int[]> changes) {
+        int[] ids = new int[changes.size()];
+        int[] deltas = new int[changes.size()];
+        int count = 0;
+        for(Map.Entry<Integer, int[]> entry : changes.entrySet()) {
+            if(entry.getValue()[0] == 0) continue;
+            ids[count] = entry.getKey();
+            deltas[count++] = entry.getValue()[0];
+        }
+        Map<Integer, int[]> failed = new HashMap<>();
+        if(count == 0) return failed;
+        boolean[] applied = productDAO.addQuantities(ids, deltas, count);
+        for(int i = 0; i < count; i++) if(!applied[i]) failed.put(ids[i], new int[]{deltas[i]});
+        return failed;
+    }
+
+    /**
+     * Method used for stopping the background writes and writing the buffered changes
+     */
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushShared();
+    }
+}
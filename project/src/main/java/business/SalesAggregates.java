@@ -0,0 +1,406 @@
+package business;
+
+import dao.ClientRevenueDAO;
+import dao.OrderDAO;
+import dao.ProductDAO;
+import dao.ProductSalesDAO;
+import dbaccess.DBConnection;
+import model.Product;
+import model.order.ItemOrder;
+import model.sales.ClientRevenue;
+import model.sales.ProductSales;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class keeps the units sold and the revenue of every product and the units bought and the money spent by every
+ * client, updated on every order instead of computed from the order history. The aggregates are kept in memory, with
+ * the products also ranked by units sold, and are written to the productsales and clientrevenue summary tables in the
+ * transaction of the order, so the reports read them in time proportional to their size. If both summary tables are
+ * empty when they are first read, they are filled once from the existing item orders. The price of a product row
+ * never changes, so the revenue of an item order is its quantity times the price of its product. The orders of a
+ * product, and of a client, must be recorded one at a time, as {@link Starter} does
+ */
+public class SalesAggregates {
+
+    /**
+     * The logger used for generating messages when an exception occurs
+     */
+    private static final Logger LOGGER = Logger.getLogger(SalesAggregates.class.getName());
+
+    /**
+     * The order of the best sellers: most units sold first, then by primary key
+     */
+    private static final Comparator<ProductSales> BY_UNITS_SOLD = Comparator
+            .comparing(ProductSales::getUnitsSold, Comparator.reverseOrder())
+            .thenComparing(ProductSales::getPrimaryKey);
+
+    /**
+     * The data access object for ProductSales
+     */
+    private final ProductSalesDAO productSalesDAO;
+
+    /**
+     * The data access object for ClientRevenue
+     */
+    private final ClientRevenueDAO clientRevenueDAO;
+
+    /**
+     * The data access object for Order, used for filling the empty summary tables
+     */
+    private final OrderDAO orderDAO;
+
+    /**
+     * The data access object for Product, used for filling the empty summary tables
+     */
+    private final ProductDAO productDAO;
+
+    /**
+     * The sales of every product, by the primary key of the product
+     */
+    private final Map<Integer, ProductSales> products = new ConcurrentHashMap<>();
+
+    /**
+     * The sales of the products, ordered by {@link #BY_UNITS_SOLD}. An entry is taken out while it changes
+     */
+    private final ConcurrentSkipListSet<ProductSales> ranking = new ConcurrentSkipListSet<>(BY_UNITS_SOLD);
+
+    /**
+     * The spending of every client, by the primary key of the client
+     */
+    private final Map<Integer, ClientRevenue> clients = new ConcurrentHashMap<>();
+
+    /**
+     * The locks guarding the sales of the products and their place in the ranking, by the primary key of the product.
+     * Only one of them is held at a time, so they cannot deadlock
+     */
+    private final Object[] productLocks = new Object[64];
+
+    /**
+     * True once the summary tables were read
+     */
+    private volatile boolean loaded;
+
+    /**
+     * The constructor initializes the fields. The summary tables are read on the first use
+     * @param productSalesDAO The data access object for ProductSales
+     * @param clientRevenueDAO The data access object for ClientRevenue
+     * @param orderDAO The data access object for Order
+     * @param productDAO The data access object for Product
+     */
+    public SalesAggregates(ProductSalesDAO productSalesDAO, ClientRevenueDAO clientRevenueDAO, OrderDAO orderDAO, ProductDAO productDAO) {
+        this.productSalesDAO = productSalesDAO;
+        this.clientRevenueDAO = clientRevenueDAO;
+        this.orderDAO = orderDAO;
+        this.productDAO = productDAO;
+        for(int i = 0; i < productLocks.length; i++) productLocks[i] = new Object();
+    }
+
+    /**
+     * Method used for getting the lock guarding the sales of a product. The commands of {@link Starter} lock the
+     * product of an order, but a deleted order changes the sales of all its products, so the sales are guarded here
+     * as well
+     * @param productId The primary key of the product
+     * @return Returns the lock
+     */
+    private Object lockOf(int productId) {
+        return productLocks[(productId ^ (productId >>> 16)) & (productLocks.length - 1)];
+    }
+
+    /**
+     * Method used for reading the summary tables, if they were not read yet, filling them from the item orders if
+     * both are empty
+     * @return Returns true if the aggregates are loaded
+     */
+    private synchronized boolean ensureLoaded() {
+        if(loaded) return true;
+        ArrayList<ProductSales> productRows = productSalesDAO.findAll();
+        ArrayList<ClientRevenue> clientRows = clientRevenueDAO.findAll();
+        if(productRows == null || clientRows == null) return false;
+        if(productRows.isEmpty() && clientRows.isEmpty()) return backfill();
+        for(ProductSales sales : productRows) {
+            products.put(sales.getPrimaryKey(), sales);
+            ranking.add(sales);
+        }
+        for(ClientRevenue revenue : clientRows) clients.put(revenue.getPrimaryKey(), revenue);
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Method used for filling the empty summary tables from the existing item orders, in a single transaction, so the
+     * tables are never left half filled. If the current thread already has a transaction the rows are written in it,
+     * and the aggregates are dropped and read again on the next use if it is rolled back
+     * @return Returns true if the summary tables were filled
+     */
+    private boolean backfill() {
+        ArrayList<Product> productRows = productDAO.findAll();
+        if(productRows == null) return false;
+        boolean ownTransaction = !DBConnection.inTransaction();
+        if(ownTransaction) DBConnection.beginTransaction();
+        Map<Integer, Product> productsById = new HashMap<>();
+        for(Product product : productRows) productsById.put(product.getPrimaryKey(), product);
+        boolean streamed = orderDAO.streamSalesRows(values -> {
+            Product product = productsById.get(((Number) values[2]).intValue());
+            if(product == null) return;
+            int quantity = ((Number) values[3]).intValue();
+            double amount = quantity * product.getPrice();
+            ProductSales sales = products.computeIfAbsent(product.getPrimaryKey(), id -> {
+                ProductSales created = new ProductSales();
+                created.setPrimaryKey(id);
+                created.setProductName(product.getProductName());
+                return created;
+            });
+            apply(sales, quantity, amount);
+            ClientRevenue revenue = clients.computeIfAbsent(((Number) values[0]).intValue(), id -> {
+                ClientRevenue created = new ClientRevenue();
+                created.setPrimaryKey(id);
+                created.setClientName((String) values[1]);
+                return created;
+            });
+            revenue.setUnitsBought(revenue.getUnitsBought() + quantity);
+            revenue.setRevenue(revenue.getRevenue() + amount);
+        });
+        boolean written = streamed;
+        for(ProductSales sales : products.values()) written = written && productSalesDAO.insert(sales);
+        for(ClientRevenue revenue : clients.values()) written = written && clientRevenueDAO.insert(revenue);
+        if(ownTransaction) {
+            try {
+                if(written) DBConnection.commitTransaction();
+                else DBConnection.rollbackTransaction();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Unable to commit the summary tables", e);
+                written = false;
+            }
+        }
+        if(!written) {
+            LOGGER.log(Level.WARNING, "The summary tables could not be filled from the item orders");
+            products.clear();
+            clients.clear();
+            return false;
+        }
+        ranking.addAll(products.values());
+        if(DBConnection.inTransaction()) DBConnection.afterTransaction(committed -> {
+            if(!committed) unload();
+        });
+        LOGGER.log(Level.INFO, "Filled the summary tables with the sales of " + products.size() + " products and " + clients.size() + " clients");
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Method used for dropping the aggregates, so the summary tables are read again on the next use
+     */
+    private synchronized void unload() {
+        loaded = false;
+        products.clear();
+        ranking.clear();
+        clients.clear();
+    }
+
+    /**
+     * Method used for reading the summary tables, so the first order does not pay for it
+     */
+    public void warmUp() {
+        ensureLoaded();
+    }
+
+    /**
+     * Method used for adding an order to the aggregates of its product and client. If the transaction of the order is
+     * rolled back, both aggregates are read again from the summary tables
+     * @param clientId The primary key of the client
+     * @param clientName The name of the client
+     * @param productId The primary key of the product
+     * @param productName The name of the product
+     * @param quantity The ordered quantity
+     * @param amount The price paid for the ordered quantity
+     */
+    public void recordSale(int clientId, String clientName, int productId, String productName, int quantity, double amount) {
+        if(!ensureLoaded()) return;
+        synchronized (lockOf(productId)) {
+            ProductSales sales = products.get(productId);
+            if(sales == null) {
+                sales = new ProductSales();
+                sales.setPrimaryKey(productId);
+                sales.setProductName(productName);
+                apply(sales, quantity, amount);
+                ranking.add(sales);
+                products.put(productId, sales);
+                productSalesDAO.insert(sales);
+            } else {
+                ranking.remove(sales);
+                apply(sales, quantity, amount);
+                ranking.add(sales);
+                productSalesDAO.update(sales);
+            }
+        }
+        ClientRevenue revenue = clients.get(clientId);
+        if(revenue == null) {
+            revenue = new ClientRevenue();
+            revenue.setPrimaryKey(clientId);
+            revenue.setClientName(clientName);
+            revenue.setUnitsBought(quantity);
+            revenue.setRevenue(amount);
+            clients.put(clientId, revenue);
+            clientRevenueDAO.insert(revenue);
+        } else {
+            revenue.setUnitsBought(revenue.getUnitsBought() + quantity);
+            revenue.setRevenue(revenue.getRevenue() + amount);
+            clientRevenueDAO.update(revenue);
+        }
+        if(DBConnection.inTransaction()) DBConnection.afterTransaction(committed -> {
+            if(!committed) reload(clientId, productId);
+        });
+    }
+
+    /**
+     * Method used for adding an order to the sales of a product
+     * @param sales The sales of the product
+     * @param quantity The ordered quantity
+     * @param amount The price paid for the ordered quantity
+     */
+    private static void apply(ProductSales sales, int quantity, double amount) {
+        sales.setUnitsSold(sales.getUnitsSold() + quantity);
+        sales.setRevenue(sales.getRevenue() + amount);
+    }
+
+    /**
+     * Method used for replacing the aggregates of a client and of a product with their rows in the summary tables
+     * @param clientId The primary key of the client
+     * @param productId The primary key of the product
+     */
+    private void reload(int clientId, int productId) {
+        synchronized (lockOf(productId)) {
+            ProductSales sales = products.remove(productId);
+            if(sales != null) ranking.remove(sales);
+            ArrayList<ProductSales> productRows = productSalesDAO.findByField("productId", productId);
+            if(productRows != null && productRows.size() > 0) {
+                products.put(productId, productRows.get(0));
+                ranking.add(productRows.get(0));
+            }
+        }
+        clients.remove(clientId);
+        ArrayList<ClientRevenue> clientRows = clientRevenueDAO.findByField("clientId", clientId);
+        if(clientRows != null && clientRows.size() > 0) clients.put(clientId, clientRows.get(0));
+    }
+
+    /**
+     * Method used for taking the item orders of a deleted order out of the aggregates of their products and client.
+     * If the transaction of the deletion is rolled back, the aggregates are read again from the summary tables
+     * @param clientId The primary key of the client of the order
+     * @param itemOrders The item orders of the order
+     */
+    public void removeOrder(int clientId, List<ItemOrder> itemOrders) {
+        if(itemOrders.isEmpty() || !ensureLoaded()) return;
+        int units = 0;
+        double spent = 0;
+        Set<Integer> productIds = new HashSet<>();
+        Map<Integer, Integer> unitsByProduct = new HashMap<>();
+        for(ItemOrder itemOrder : itemOrders) unitsByProduct.merge(itemOrder.getProductId(), itemOrder.getQuantity(), Integer::sum);
+        for(Map.Entry<Integer, Integer> entry : unitsByProduct.entrySet()) {
+            int quantity = entry.getValue();
+            synchronized (lockOf(entry.getKey())) {
+                ProductSales sales = products.get(entry.getKey());
+                if(sales == null || sales.getUnitsSold() == 0) continue;
+                double amount = quantity * sales.getRevenue() / sales.getUnitsSold();
+                ranking.remove(sales);
+                apply(sales, -quantity, -amount);
+                ranking.add(sales);
+                productSalesDAO.update(sales);
+                units += quantity;
+                spent += amount;
+            }
+            productIds.add(entry.getKey());
+        }
+        ClientRevenue revenue = clients.get(clientId);
+        if(revenue != null && units > 0) {
+            revenue.setUnitsBought(revenue.getUnitsBought() - units);
+            revenue.setRevenue(revenue.getRevenue() - spent);
+            clientRevenueDAO.update(revenue);
+        }
+        if(DBConnection.inTransaction()) DBConnection.afterTransaction(committed -> {
+            if(!committed) for(int productId : productIds) reload(clientId, productId);
+        });
+    }
+
+    /**
+     * Method used for dropping the sales of a deleted product
+     * @param productId The primary key of the product
+     */
+    public void removeProduct(int productId) {
+        if(!ensureLoaded()) return;
+        synchronized (lockOf(productId)) {
+            ProductSales sales = products.remove(productId);
+            if(sales == null) return;
+            ranking.remove(sales);
+            productSalesDAO.delete(sales);
+        }
+    }
+
+    /**
+     * Method used for dropping the spending of a deleted client
+     * @param clientId The primary key of the client
+     */
+    public void removeClient(int clientId) {
+        if(!ensureLoaded()) return;
+        ClientRevenue revenue = clients.remove(clientId);
+        if(revenue != null) clientRevenueDAO.delete(revenue);
+    }
+
+    /**
+     * Method used for getting the sales of every product, the best sellers first
+     * @return Returns the sales, or null if the summary tables could not be read
+     */
+    public ArrayList<ProductSales> getProductSales() {
+        if(!ensureLoaded()) return null;
+        return new ArrayList<>(ranking);
+    }
+
+    /**
+     * Method used for getting the products with the most units sold
+     * @param count The number of products
+     * @return Returns at most count sales, the best sellers first, or null if the summary tables could not be read
+     */
+    public ArrayList<ProductSales> getBestSellers(int count) {
+        if(!ensureLoaded()) return null;
+        ArrayList<ProductSales> result = new ArrayList<>(Math.min(count, products.size()));
+        Iterator<ProductSales> iterator = ranking.iterator();
+        while(result.size() < count && iterator.hasNext()) result.add(iterator.next());
+        return result;
+    }
+
+    /**
+     * Method used for getting the spending of every client
+     * @return Returns the spending, or null if the summary tables could not be read
+     */
+    public ArrayList<ClientRevenue> getClientRevenues() {
+        if(!ensureLoaded()) return null;
+        return new ArrayList<>(clients.values());
+    }
+
+    /**
+     * @return Returns the columns of the productsales table
+     */
+    public ArrayList<String> getProductSalesColumns() {
+        return productSalesDAO.getColumns();
+    }
+
+    /**
+     * @return Returns the columns of the clientrevenue table
+     */
+    public ArrayList<String> getClientRevenueColumns() {
+        return clientRevenueDAO.getColumns();
+    }
+}
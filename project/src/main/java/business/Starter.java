@@ -2,19 +2,41 @@ package business;
 
 import business.validator.ClientValidator;
 import business.validator.ProductValidator;
+import business.validator.ValidationResult;
+import dao.CheckpointDAO;
 import dao.ClientDAO;
+import dao.ClientRevenueDAO;
 import dao.ItemOrderDAO;
 import dao.OrderDAO;
 import dao.ProductDAO;
+import dao.ProductSalesDAO;
+import dao.SchemaManager;
+import dbaccess.DBConnection;
+import dbaccess.StatementStatistics;
+import dbaccess.TableVersions;
+import model.Checkpoint;
 import model.Client;
 import model.Product;
 import model.order.ItemOrder;
 import model.order.Order;
-import presentation.Controller;
+import model.sales.ClientRevenue;
+import model.sales.ProductSales;
+import presentation.ExportFormat;
+import presentation.ExportWriter;
+import presentation.ParsedCommand;
 import presentation.ReportGenerator;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,9 +52,9 @@ public class Starter {
 
 
     /**
-     * Controller used for input operations
+     * The processor of the input file given to the constructor, null if there is none
      */
-    private Controller controller;
+    private FileProcessor processor;
 
     /**
      * The data access object for Client
@@ -54,6 +76,31 @@ public class Starter {
      */
     private ItemOrderDAO itemOrderDAO;
 
+    /**
+     * The in-memory stock of the products, used by the orders
+     */
+    private InventoryIndex inventory;
+
+    /**
+     * The service reserving the stock of the orders
+     */
+    private StockReservationService stockReservations;
+
+    /**
+     * The open orders of the clients
+     */
+    private OrderSessionService orderSessions;
+
+    /**
+     * The sales of the products and the spending of the clients
+     */
+    private SalesAggregates salesAggregates;
+
+    /**
+     * The generator of the incremental order reports
+     */
+    private OrderDeltaReport orderDeltaReport;
+
     /**
      * The client validator used
      */
@@ -72,212 +119,634 @@ public class Starter {
     /**
      * Counter used for generating the name of the pdf file of clients table
      */
-    private static int clientReportCount;
+    private static final AtomicInteger clientReportCount = new AtomicInteger();
 
     /**
      * Counter used for generating the name of the pdf file of products table
      */
-    private static int productReportCount;
+    private static final AtomicInteger productReportCount = new AtomicInteger();
 
     /**
      * Counter used for generating the name of the pdf file of orders table
      */
-    private static int orderReportCount;
+    private static final AtomicInteger orderReportCount = new AtomicInteger();
 
     /**
      * Counter used for generating the name of  the pdf file of bill
      */
-    private static int billCount;
+    private static final AtomicInteger billCount = new AtomicInteger();
 
     /**
      * Counter used for generating the name of the pdf file of under-stock message
      */
-    private static int underStockCount;
+    private static final AtomicInteger underStockCount = new AtomicInteger();
+
+    /**
+     * Counter used for generating the name of the pdf file of the sales reports
+     */
+    private static final AtomicInteger salesReportCount = new AtomicInteger();
+
+    /**
+     * The number of products of a best sellers report which does not give it
+     */
+    private static final int BEST_SELLERS = Integer.getInteger("shopdb.report.bestSellers", 10);
+
+    /**
+     * The number of connections opened on every pool during the warm-up
+     */
+    private static final int WARM_UP_CONNECTIONS = Integer.getInteger("shopdb.warmup.connections", 2);
+
+    /**
+     * True if the caches are loaded during the warm-up
+     */
+    private static final boolean WARM_UP_PRELOAD = Boolean.parseBoolean(System.getProperty("shopdb.warmup.preload", "true"));
+
+    /**
+     * The moment the JVM was started, used for measuring the time to the first command
+     */
+    private final long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    /**
+     * True until the first command is executed
+     */
+    private final AtomicBoolean firstCommand = new AtomicBoolean(true);
+
+    /**
+     * The data access object for Checkpoint
+     */
+    private CheckpointDAO checkpointDAO;
+
+    /**
+     * The locks ordering the commands which touch the same client or product
+     */
+    private final KeyedLocks locks = new KeyedLocks(Integer.getInteger("shopdb.locks.stripes", 1024));
+
+    /**
+     * The number of input files processed at once in the multi-file mode
+     */
+    private static final int FILE_THREADS = Integer.getInteger("shopdb.files.threads", Runtime.getRuntime().availableProcessors());
 
     /**
      * The constructor initialize the fields
      * @param input is the input file with commands
      */
     public Starter(File input) {
-        controller = new Controller(input);
+        this(input, false);
+    }
+
+    /**
+     * The constructor initialize the fields. In resume mode the commands are read starting from the last checkpoint of
+     * the input file and the counters are restored from it
+     * @param input is the input file with commands
+     * @param resume True if the processing resumes from the last checkpoint
+     */
+    public Starter(File input, boolean resume) {
+        this();
+        processor = new FileProcessor(this, input, resume);
+    }
+
+    /**
+     * The constructor initialize the fields without an input file. The commands are given to
+     * {@link #executeCommand(ParsedCommand)} by other sources, such as the {@link CommandServer}, or read from several
+     * files by {@link #executeFiles(List, boolean)}
+     */
+    public Starter() {
         clientDAO = new ClientDAO();
         productDAO = new ProductDAO();
         orderDAO = new OrderDAO();
         itemOrderDAO = new ItemOrderDAO();
-        clientValidator = new ClientValidator();
-        productValidator = new ProductValidator();
+        clientValidator = new ClientValidator(clientDAO);
+        productValidator = new ProductValidator(productDAO);
+        inventory = new InventoryIndex(productDAO);
+        stockReservations = new StockReservationService(inventory);
+        orderSessions = new OrderSessionService(clientDAO, orderDAO);
+        salesAggregates = new SalesAggregates(new ProductSalesDAO(), new ClientRevenueDAO(), orderDAO, productDAO);
         reportGenerator = new ReportGenerator();
+        orderDeltaReport = new OrderDeltaReport(orderDAO, reportGenerator);
+        checkpointDAO = new CheckpointDAO();
+
+        clientReportCount.set(-1);
+        productReportCount.set(-1);
+        orderReportCount.set(-1);
+        billCount.set(-1);
+        underStockCount.set(-1);
+    }
+
+    /**
+     * @return Returns the data access object for Checkpoint
+     */
+    CheckpointDAO getCheckpointDAO() {
+        return checkpointDAO;
+    }
+
+    /**
+     * Method used for restoring the counters from a checkpoint. A counter is never moved backwards, so when several
+     * files are resumed the names generated by any of them are not reused
+     * @param saved The checkpoint
+     */
+    void restoreCounters(Checkpoint saved) {
+        clientReportCount.accumulateAndGet(saved.getClientReportCount(), Math::max);
+        productReportCount.accumulateAndGet(saved.getProductReportCount(), Math::max);
+        orderReportCount.accumulateAndGet(saved.getOrderReportCount(), Math::max);
+        billCount.accumulateAndGet(saved.getBillCount(), Math::max);
+        underStockCount.accumulateAndGet(saved.getUnderStockCount(), Math::max);
+    }
 
-        clientReportCount = -1;
-        productReportCount = -1;
-        orderReportCount = -1;
-        billCount = -1;
-        underStockCount = -1;
+    /**
+     * Method used for storing the current counters in a checkpoint
+     * @param checkpoint The checkpoint
+     */
+    void storeCounters(Checkpoint checkpoint) {
+        checkpoint.setClientReportCount(clientReportCount.get());
+        checkpoint.setProductReportCount(productReportCount.get());
+        checkpoint.setOrderReportCount(orderReportCount.get());
+        checkpoint.setBillCount(billCount.get());
+        checkpoint.setUnderStockCount(underStockCount.get());
     }
 
     /**
-     * Method used for executing the add client operation. If the validator throws an exception that means that the client
+     * Method used for executing the add client operation. If the validator reports a duplicate that means that the client
      * with specified name already exists in the table and the method will exit without inserting the client.
+     * @param command The command to be executed
+     * @return Returns the result of the command
      */
-    private void executeAddClient() {
+    private String executeAddClient(ParsedCommand command) {
         Client client = new Client();
-        client.setName(controller.getClientName());
-        client.setAddress(controller.getClientAddress());
-        try {
-            clientValidator.validate(client);
-        } catch (Exception e) {
+        client.setName(command.getClientName());
+        client.setAddress(command.getClientAddress());
+        if(!clientValidator.validate(client).isValid()) {
             LOGGER.log(Level.WARNING, "Client already exists");
-            return;
+            return "DUPLICATE " + client.getName();
         }
         clientDAO.insert(client);
+        return "OK";
     }
 
     /**
      * Method used for deleting a client from the clients table
+     * @param command The command to be executed
+     * @return Returns the result of the command
      */
-    private void executeDeleteClient() {
-        clientDAO.deleteByName(controller.getClientName());
+    private String executeDeleteClient(ParsedCommand command) {
+        Integer clientId = orderSessions.getClientId(command.getClientName());
+        clientDAO.deleteByName(command.getClientName());
+        orderSessions.forgetClient(command.getClientName());
+        if(clientId != null) salesAggregates.removeClient(clientId);
+        return "OK";
     }
 
     /**
-     * Method used for executing the add product operation. See  {@link #executeAddClient()}
+     * Method used for executing the add product operation. See  {@link #executeAddClient(ParsedCommand)}. A product
+     * with the same name and price is restocked, a product with the same name and another price is inserted as a new row
+     * @param command The command to be executed
+     * @return Returns the result of the command
      */
-    private void executeAddProduct() {
+    private String executeAddProduct(ParsedCommand command) {
         Product product = new Product();
-        product.setProductName(controller.getProductName());
-        product.setPrice(controller.getProductPrice());
-        product.setQuantity(controller.getQuantity());
-        try {
-            productValidator.validate(product);
-        } catch (Exception e) {
+        product.setProductName(command.getProductName());
+        product.setPrice(command.getProductPrice());
+        product.setQuantity(command.getQuantity());
+        ValidationResult<Product> validation = productValidator.validate(product);
+        if(validation.getStatus() == ValidationResult.Status.DUPLICATE_NAME) {
             int quantity = product.getQuantity();
-            product = productDAO.findByProductName(product.getProductName());
+            product = validation.getExisting();
+            int stock = inventory.restock(product.getProductName(), product.getPrimaryKey(), quantity);
+            if(stock >= 0) return "OK " + stock;
             product.setQuantity(product.getQuantity() + quantity);
             productDAO.update(product);
-            return;
+            return "OK " + product.getQuantity();
         }
         productDAO.insert(product);
+        inventory.add(product);
+        return "OK " + product.getQuantity();
     }
 
     /**
      * Method used for deleting a product from the products table
+     * @param command The command to be executed
+     * @return Returns the result of the command
      */
-    private void executeDeleteProduct() {
-        productDAO.deleteByProductName(controller.getProductName());
+    private String executeDeleteProduct(ParsedCommand command) {
+        int productId = inventory.getId(command.getProductName());
+        productDAO.deleteByProductName(command.getProductName());
+        inventory.remove(command.getProductName());
+        if(productId >= 0) salesAggregates.removeProduct(productId);
+        return "OK";
     }
 
     /**
-     * Method used for executing the generate report command
+     * Method used for executing the generate report command. The command names the table and optionally the format
+     * of the report and the gzip compression, such as "REPORT product csv gzip", or "REPORT order delta" for an
+     * incremental order report, see {@link OrderDeltaReport}, or "REPORT sales", "REPORT revenue" and
+     * "REPORT bestsellers [count]" for the reports of the {@link SalesAggregates}. The PDF reports are rendered from the
+     * loaded rows, the CSV and columnar reports are streamed from the database cursor. If the tables of the report were
+     * not written since the same report was last generated, the previous file is reused
+     * @param command The command to be executed
+     * @return Returns the result of the command
      */
-    private void executeGenerateReport() {
-        ArrayList<String> columns = new ArrayList<>();
-        ArrayList<?> rows = new ArrayList<>();
-        String reportName = "";
-        String table = controller.getReportTableName();
+    private String executeGenerateReport(ParsedCommand command) {
+        inventory.flush();
+        String[] arguments = command.getReportTableName().trim().split("\\s+");
+        String table = arguments[0];
+        if(table.equals("order") && arguments.length > 1 && arguments[1].equalsIgnoreCase("delta")) {
+            String reportName = table + orderReportCount.incrementAndGet() + "-delta.pdf";
+            return orderDeltaReport.generate(reportName) ? "OK " + reportName : "ERROR " + reportName + " could not be generated";
+        }
+        if(table.equals("sales") || table.equals("revenue") || table.equals("bestsellers")) return generateSalesReport(arguments);
+        ExportFormat format = arguments.length > 1 ? ExportFormat.of(arguments[1]) : ExportFormat.PDF;
+        boolean gzip = format != ExportFormat.PDF && arguments.length > 2 && arguments[2].equalsIgnoreCase("gzip");
+        if(format == null) return "ERROR unknown report format " + arguments[1];
+        String reportName;
+        String[] tables;
+        switch (table) {
+            case "client" :
+                reportName = table + clientReportCount.incrementAndGet();
+                tables = new String[]{"clients"};
+                break;
+            case "product" :
+                reportName = table + productReportCount.incrementAndGet();
+                tables = new String[]{"products"};
+                break;
+            case "order" :
+                reportName = table + orderReportCount.incrementAndGet();
+                tables = new String[]{"clients", "orders", "itemOrders", "products"};
+                break;
+            default:
+                return "ERROR unknown report table " + table;
+        }
+        reportName += format.getExtension() + (gzip ? ".gz" : "");
+        String cacheKey = table + " " + format + (gzip ? " gzip" : "");
+        long version = TableVersions.get(tables);
+        if(reportGenerator.reuseReport(cacheKey, version, reportName)) return "OK " + reportName;
+        String result = format == ExportFormat.PDF ? generatePdfReport(table, reportName) : exportReport(table, reportName, format, gzip);
+        if(result.startsWith("OK")) reportGenerator.cacheReport(cacheKey, version, reportName);
+        return result;
+    }
+
+    /**
+     * Method used for generating a PDF report from the sales aggregates, without reading the order history
+     * @param arguments The arguments of the command: sales, revenue, or bestsellers followed by the number of products
+     * @return Returns the result of the command
+     */
+    private String generateSalesReport(String[] arguments) {
+        String reportName = arguments[0] + salesReportCount.incrementAndGet() + ".pdf";
+        ArrayList<String> columns;
+        ArrayList<?> rows;
+        switch (arguments[0]) {
+            case "sales" :
+                columns = salesAggregates.getProductSalesColumns();
+                rows = salesAggregates.getProductSales();
+                break;
+            case "revenue" :
+                columns = salesAggregates.getClientRevenueColumns();
+                rows = salesAggregates.getClientRevenues();
+                break;
+            default:
+                int count;
+                try {
+                    count = arguments.length > 1 ? Integer.parseInt(arguments[1]) : BEST_SELLERS;
+                } catch (NumberFormatException e) {
+                    return "ERROR invalid number of best sellers " + arguments[1];
+                }
+                if(count <= 0) return "ERROR invalid number of best sellers " + count;
+                columns = salesAggregates.getProductSalesColumns();
+                rows = salesAggregates.getBestSellers(count);
+        }
+        if(columns == null || rows == null) return "ERROR the sales aggregates could not be read";
+        if(!reportGenerator.generateReport(reportName, rows, columns)) return "ERROR " + reportName + " could not be written";
+        return "OK " + reportName;
+    }
+
+    /**
+     * Method used for generating the PDF report of a table from its loaded rows
+     * @param table The name of the table: client, product or order
+     * @param reportName The name of the report file
+     * @return Returns the result of the command
+     */
+    private String generatePdfReport(String table, String reportName) {
+        ArrayList<String> columns;
+        ArrayList<?> rows;
         switch (table) {
             case "client" :
                 columns = clientDAO.getColumns();
                 rows = clientDAO.findAll();
-                clientReportCount++;
-                reportName = table + clientReportCount;
                 break;
             case "product" :
                 columns = productDAO.getColumns();
                 rows = productDAO.findAll();
-                productReportCount++;
-                reportName = table + productReportCount;
                 break;
-            case "order" :
+            default:
                 columns = orderDAO.getOrderHelperColumns();
                 rows = orderDAO.getOrderHelperRows();
-                orderReportCount++;
-                reportName = table + orderReportCount;
         }
-        reportName += ".pdf";
-        reportGenerator.generateReport(reportName, rows, columns);
+        if(columns == null || rows == null) return "ERROR the rows of " + table + " could not be read";
+        if(!reportGenerator.generateReport(reportName, rows, columns)) return "ERROR " + reportName + " could not be written";
+        return "OK " + reportName;
     }
 
     /**
-     * Method used for getting the order a specified client, if it doesnt exist create a new one
-     * @return Returns the order
+     * Method used for exporting a table as data, streaming its rows from the database cursor to the file
+     * @param table The name of the table: client, product or order
+     * @param reportName The name of the report file
+     * @param format The format of the file, CSV or COLUMNAR
+     * @param gzip True if the file is compressed with gzip
+     * @return Returns the result of the command
      */
-    private Order getOrder() {
-        if(orderDAO.findByField("clientId", clientDAO.findByName(controller.getClientName()).getPrimaryKey()) == null ||
-                orderDAO.findByField("clientId", clientDAO.findByName(controller.getClientName()).getPrimaryKey()).size() == 0) {
-            Order order = new Order();
-            Client client = clientDAO.findByName(controller.getClientName());
-            order.setClientId(client.getPrimaryKey());
-            orderDAO.insert(order);
-            return order;
+    private String exportReport(String table, String reportName, ExportFormat format, boolean gzip) {
+        ArrayList<String> columns;
+        switch (table) {
+            case "client" :
+                columns = clientDAO.getColumns();
+                break;
+            case "product" :
+                columns = productDAO.getColumns();
+                break;
+            default:
+                columns = orderDAO.getOrderHelperColumns();
         }
-        else {
-            return orderDAO.findByField("clientId", clientDAO.findByName(controller.getClientName()).getPrimaryKey()).get(0);
+        if(columns == null) return "ERROR the columns of " + table + " could not be read";
+        boolean streamed;
+        try (ExportWriter writer = ExportWriter.open(format, reportName, columns, gzip)) {
+            switch (table) {
+                case "client" :
+                    streamed = clientDAO.streamAll(writer);
+                    break;
+                case "product" :
+                    streamed = productDAO.streamAll(writer);
+                    break;
+                default:
+                    streamed = orderDAO.streamOrderHelperRows(writer);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The report could not be written", e);
+            return "ERROR " + reportName + " could not be written";
         }
+        return streamed ? "OK " + reportName : "ERROR " + reportName + " is incomplete";
     }
 
+    /**
+     * Method used for deleting the open order of a client, if it has one. The item orders are deleted first, since the
+     * order cannot be deleted while it has any, and are taken out of the {@link SalesAggregates} only once they are
+     * deleted. If they could not be read or deleted, the order is kept
+     * @param clientId The primary key of the client
+     */
+    private void deleteOrder(int clientId) {
+        Order order = orderSessions.findOrder(clientId);
+        if(order == null) return;
+        ArrayList<ItemOrder> itemOrders = itemOrderDAO.findByField("orderId", order.getPrimaryKey());
+        if(itemOrders == null || !itemOrderDAO.deleteByField("orderId", order.getPrimaryKey())) {
+            LOGGER.log(Level.WARNING, "The item orders of the order " + order.getPrimaryKey() + " could not be deleted, the order is kept");
+            return;
+        }
+        salesAggregates.removeOrder(clientId, itemOrders);
+        if(!orderSessions.deleteOrder(clientId)) LOGGER.log(Level.WARNING, "The order " + order.getPrimaryKey() + " could not be deleted");
+    }
 
     /**
      * Method used for creating a order and inserting that order in the database. This method also generates a bill
-     * if successful otherwise it will generate an under-stock message.
+     * if successful otherwise it will generate an under-stock message. The stock is reserved through the
+     * {@link StockReservationService} before the order is written and released if the order or the item order could
+     * not be written; otherwise, inside a transaction, the reservation follows the transaction. The open order of the
+     * client is found through the {@link OrderSessionService}
+     * @param command The command to be executed
+     * @return Returns the result of the command
      */
-    private void executeCreateOrder() {
-        if(clientDAO.findByName(controller.getClientName()) == null) return;
-        billCount++;
-        Order order;
-        order = getOrder();
+    private String executeCreateOrder(ParsedCommand command) {
+        Integer clientId = orderSessions.getClientId(command.getClientName());
+        if(clientId == null) return "UNKNOWN CLIENT " + command.getClientName();
+        String productName = command.getProductName();
+        if(!inventory.contains(productName)) return "UNKNOWN PRODUCT " + productName;
+        int bill = billCount.incrementAndGet();
         ItemOrder itemOrder = new ItemOrder();
-        Product product = productDAO.findByProductName(controller.getProductName());
-        int quantity = controller.getQuantity();
-        if(quantity > product.getQuantity()) {
-            underStockCount++;
-            reportGenerator.generateUnderStock("understock" + underStockCount + ".pdf", product, quantity);
-            orderDAO.delete(order);
-            return;
+        int quantity = command.getQuantity();
+        Product product = new Product();
+        product.setProductName(productName);
+        StockReservationService.Reservation reservation = stockReservations.reserve(productName, quantity);
+        if(reservation == null) {
+            String underStockName = "understock" + underStockCount.incrementAndGet() + ".pdf";
+            product.setQuantity(inventory.getQuantity(productName));
+            reportGenerator.generateUnderStock(underStockName, product, quantity);
+            deleteOrder(clientId);
+            return "UNDERSTOCK " + underStockName;
+        }
+        try {
+            double amount = quantity * reservation.getPrice();
+            Order order = orderSessions.addToTotal(clientId, amount);
+            if(order == null) {
+                stockReservations.release(reservation);
+                return "ERROR the order of " + command.getClientName() + " could not be written";
+            }
+            itemOrder.setOrderId(order.getPrimaryKey());
+            itemOrder.setProductId(reservation.getProductId());
+            itemOrder.setQuantity(quantity);
+            if(!itemOrderDAO.insert(itemOrder)) {
+                orderSessions.addToTotal(clientId, -amount);
+                stockReservations.release(reservation);
+                return "ERROR the order of " + command.getClientName() + " could not be written";
+            }
+            salesAggregates.recordSale(clientId, command.getClientName(), reservation.getProductId(), productName, quantity, amount);
+        } catch (RuntimeException e) {
+            stockReservations.release(reservation);
+            throw e;
+        }
+        stockReservations.complete(reservation);
+        String billName = "bill" + bill + ".pdf";
+        product.setPrice(reservation.getPrice());
+        reportGenerator.generateBill(billName, command.getClientName(), product, itemOrder);
+        return "OK " + billName;
+    }
+
+    /**
+     * Method used for the warm-up phase: the connections are opened, the common statements are executed once, the
+     * iText fonts are loaded and, if enabled, the caches are preloaded, so the first command does not pay for them. The
+     * statement statistics of the warm-up are discarded
+     */
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        DBConnection.warmUp(WARM_UP_CONNECTIONS);
+        clientDAO.warmUp(WARM_UP_PRELOAD);
+        productDAO.warmUp(WARM_UP_PRELOAD);
+        orderDAO.warmUp(WARM_UP_PRELOAD);
+        itemOrderDAO.warmUp(WARM_UP_PRELOAD);
+        inventory.warmUp();
+        salesAggregates.warmUp();
+        reportGenerator.warmUp();
+        StatementStatistics.reset();
+        LOGGER.log(Level.INFO, "Warm-up finished in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Method used for releasing the resources held by the executor, such as the archive of the bills being written
+     */
+    public void close() {
+        inventory.close();
+        reportGenerator.close();
+    }
+
+    /**
+     * Method used for writing the stock changes of the transaction of the current thread in the transaction, so a
+     * checkpoint never covers quantities which are not stored with it
+     * @return Returns true if every stock change of the transaction is written
+     */
+    boolean flushInventory() {
+        return inventory.flushTransaction();
+    }
+
+    /**
+     * Method used for logging the time elapsed from the start of the JVM until the end of the first command
+     */
+    void reportFirstCommand() {
+        if(!firstCommand.compareAndSet(true, false)) return;
+        LOGGER.log(Level.INFO, "Time to first command: " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * Method used for executing a command. The method can be called by several threads at once: the commands touching
+     * the same client or product are executed one at a time, in the order they arrive, the others run concurrently. The
+     * reads following a write of the command use the primary database, see {@link DBConnection#getReadConnection()}
+     * @param command The command to be executed
+     * @return Returns the result of the command as a line of text
+     */
+    public String executeCommand(ParsedCommand command) {
+        int[] locked;
+        switch (command.getCommandType()) {
+            case ADD_CLIENT:
+            case DELETE_CLIENT:
+                locked = locks.lock(command.getClientName());
+                break;
+            case ADD_PRODUCT:
+            case DELETE_PRODUCT:
+                locked = locks.lock(command.getProductName());
+                break;
+            case CREATE_ORDER:
+                locked = locks.lock(command.getClientName(), command.getProductName());
+                break;
+            default:
+                locked = locks.lock();
+        }
+        DBConnection.beginCommand();
+        try {
+            return executeLocked(command);
+        } finally {
+            DBConnection.endCommand();
+            locks.unlock(locked);
+        }
+    }
+
+    /**
+     * Method used for executing a command once the locks of its client and product are held
+     * @param command The command to be executed
+     * @return Returns the result of the command as a line of text
+     */
+    private String executeLocked(ParsedCommand command) {
+        switch (command.getCommandType()) {
+            case ADD_CLIENT:
+                return executeAddClient(command);
+            case DELETE_CLIENT:
+                return executeDeleteClient(command);
+            case ADD_PRODUCT:
+                return executeAddProduct(command);
+            case DELETE_PRODUCT:
+                return executeDeleteProduct(command);
+            case GENERATE_REPORT:
+                return executeGenerateReport(command);
+            case CREATE_ORDER:
+                return executeCreateOrder(command);
+            default:
+                return "UNKNOWN COMMAND";
         }
-        order.setTotal(order.getTotal() + controller.getQuantity() * product.getPrice());
-        orderDAO.update(order);
-        itemOrder.setOrderId(order.getPrimaryKey());
-        itemOrder.setProductId(product.getPrimaryKey());
-        itemOrder.setQuantity(quantity);
-        itemOrderDAO.insert(itemOrder);
-        reportGenerator.generateBill("bill" + billCount + ".pdf", order, itemOrder);
-        product.setQuantity(product.getQuantity() - quantity);
-        productDAO.update(product);
     }
 
     /**
-     * This method will take all commands from input file using the controller and execute all commands
+     * This method will take all commands from the input file given to the constructor and execute all commands. See
+     * {@link FileProcessor#run()}. The buffered quantity changes are written before it returns
      */
     public void executeAll() {
-        while(controller.hasNext()) {
-            controller.readCommand();
-            switch (controller.getCommandType()) {
-                case ADD_CLIENT:
-                    executeAddClient();
-                    break;
-                case DELETE_CLIENT:
-                    executeDeleteClient();
-                    break;
-                case ADD_PRODUCT:
-                    executeAddProduct();
-                    break;
-                case DELETE_PRODUCT:
-                    executeDeleteProduct();
-                    break;
-                case GENERATE_REPORT:
-                    executeGenerateReport();
-                    break;
-                case CREATE_ORDER:
-                    executeCreateOrder();
-                default:break;
+        processor.run();
+        inventory.flush();
+        if(DBConnection.isStatisticsEnabled()) LOGGER.log(Level.INFO, StatementStatistics.report());
+    }
+
+    /**
+     * Method used for executing the commands of several input files at once, each file on its own thread. The commands
+     * of a file are executed in order; the commands of different files are ordered only when they touch the same
+     * client or product. At the end a throughput summary of every file and of the whole run is logged
+     * @param inputs The input files with commands
+     * @param resume True if the processing of every file resumes from its last checkpoint
+     */
+    public void executeFiles(List<File> inputs, boolean resume) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(FILE_THREADS, inputs.size())));
+        List<FileProcessor> processors = new ArrayList<>();
+        List<Future<?>> results = new ArrayList<>();
+        for(File input : inputs) {
+            FileProcessor fileProcessor = new FileProcessor(this, input, resume);
+            processors.add(fileProcessor);
+            results.add(executor.submit(fileProcessor));
+        }
+        executor.shutdown();
+        for(int i = 0; i < results.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "The processing of " + inputs.get(i) + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.log(Level.WARNING, "Interrupted while waiting for " + inputs.get(i), e);
+                executor.shutdownNow();
+                return;
             }
         }
-        controller.closeScanner();
+        inventory.flush();
+        long elapsed = System.nanoTime() - start;
+        StringBuilder summary = new StringBuilder("Throughput summary\n");
+        long total = 0;
+        for(FileProcessor fileProcessor : processors) {
+            total += fileProcessor.getCommandCount();
+            summary.append(formatThroughput(fileProcessor.getInput().getName(), fileProcessor.getCommandCount(),
+                    fileProcessor.getElapsedNanos())).append('\n');
+        }
+        summary.append(formatThroughput("total", total, elapsed));
+        LOGGER.log(Level.INFO, summary.toString());
+        if(DBConnection.isStatisticsEnabled()) LOGGER.log(Level.INFO, StatementStatistics.report());
+    }
+
+    /**
+     * Method used for formatting a line of the throughput summary
+     * @param name The name of the line
+     * @param commands The number of executed commands
+     * @param nanos The elapsed time, in nanoseconds
+     * @return Returns the formatted line
+     */
+    private static String formatThroughput(String name, long commands, long nanos) {
+        return String.format("%-30s %10d commands %12.3f ms %12.1f commands/s", name, commands, nanos / 1e6,
+                nanos == 0 ? 0 : commands * 1e9 / nanos);
     }
 
-    public static void main(String[] args) {
+    /**
+     * The entry point of the application. Usage: Starter input... [--resume] for processing one or more command files,
+     * or Starter --server port for accepting commands over TCP
+     * @param args The arguments of the application
+     * @throws IOException If the server could not be started
+     */
+    public static void main(String[] args) throws IOException {
         if(args.length == 0) return;
-        Starter starter = new Starter(new File(args[0]));
-        starter.executeAll();
+        new SchemaManager(Client.class, Product.class, Order.class, ItemOrder.class, ProductSales.class, ClientRevenue.class, Checkpoint.class).apply();
+        boolean server = args[0].equals("--server");
+        boolean resume = false;
+        List<File> inputs = new ArrayList<>();
+        if(!server) for(String arg : args) {
+            if(arg.equals("--resume")) resume = true;
+            else inputs.add(new File(arg));
+        }
+        Starter starter = server || inputs.size() > 1 ? new Starter() : new Starter(inputs.get(0), resume);
+        if(Boolean.parseBoolean(System.getProperty("shopdb.warmup", "true"))) starter.warmUp();
+        try {
+            if(server) new CommandServer(starter, Integer.parseInt(args[1])).run();
+            else if(inputs.size() > 1) starter.executeFiles(inputs, resume);
+            else starter.executeAll();
+        } finally {
+            starter.close();
+        }
     }
 }
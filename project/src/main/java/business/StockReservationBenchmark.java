@@ -0,0 +1,108 @@
+package business;
+
+import model.Product;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark comparing the stock reservations of {@link StockReservationService} with reservations behind a single
+ * global lock, for several threads ordering from one hot product or from many products. Only the reservations are
+ * measured, the quantities are not written to the database, and every index is closed after its run. Usage: StockReservationBenchmark [thread counts separated
+ * by commas] [product counts separated by commas] [reservations per thread]
+ */
+public class StockReservationBenchmark {
+
+    public static void main(String[] args) throws ReflectiveOperationException, InterruptedException {
+        String[] threadCounts = (args.length > 0 ? args[0] : "1,2,4,8").split(",");
+        String[] productCounts = (args.length > 1 ? args[1] : "1,1000").split(",");
+        int reservations = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        Method setPK = Product.class.getDeclaredMethod("setPK", Integer.class);
+        setPK.setAccessible(true);
+        for(String productCount : productCounts) {
+            int count = Integer.parseInt(productCount.trim());
+            String[] names = new String[count];
+            List<Product> products = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                names[i] = "product" + i;
+                Product product = new Product();
+                setPK.invoke(product, i + 1);
+                product.setProductName(names[i]);
+                product.setQuantity(Integer.MAX_VALUE);
+                product.setPrice(1.0);
+                products.add(product);
+            }
+            for(String threadCount : threadCounts) {
+                int threads = Integer.parseInt(threadCount.trim());
+                InventoryIndex inventory = new InventoryIndex(null, products);
+                double striped;
+                try {
+                    StockReservationService service = new StockReservationService(inventory);
+                    striped = run(threads, reservations, names, name -> service.reserve(name, 1) != null);
+                } finally {
+                    inventory.close();
+                }
+                Map<String, int[]> stock = new HashMap<>();
+                for(String name : names) stock.put(name, new int[]{Integer.MAX_VALUE});
+                double global = run(threads, reservations, names, name -> {
+                    synchronized (stock) {
+                        int[] quantity = stock.get(name);
+                        if(quantity == null || quantity[0] < 1) return false;
+                        quantity[0]--;
+                        return true;
+                    }
+                });
+                System.out.printf("%d products, %d threads: service %.1f M/s, global lock %.1f M/s%n",
+                        count, threads, striped, global);
+            }
+        }
+    }
+
+    /**
+     * Method used for running the reservations on several threads at once
+     * @param threads The number of threads
+     * @param reservations The number of reservations of every thread
+     * @param names The names of the products, used in turn by every thread
+     * @param reserve The reservation of one unit of a product
+     * @return Returns the throughput, in millions of reservations per second
+     * @throws InterruptedException If the benchmark is interrupted
+     */
+    private static double run(int threads, int reservations, String[] names, Reserve reserve) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong taken = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                for(int i = 0; i < reservations; i++) if(reserve.reserve(names[(offset + i) % names.length])) count++;
+                taken.addAndGet(count);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for(Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - begin;
+        if(taken.get() != (long) threads * reservations) throw new IllegalStateException("Lost reservations: " + taken.get());
+        return taken.get() * 1e3 / elapsed;
+    }
+
+    /**
+     * The reservation of one unit of a product
+     */
+    private interface Reserve {
+        boolean reserve(String name);
+    }
+}
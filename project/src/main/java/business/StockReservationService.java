@@ -0,0 +1,151 @@
+package business;
+
+import dbaccess.DBConnection;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * This class reserves the stock of the orders in the {@link InventoryIndex}. A reservation takes the quantity out of
+ * the available stock at once, with compare-and-set, so two orders can never both get the last units of a product.
+ * It is then either committed, and the change of the quantity is written to the database, or released, and the
+ * quantity is put back. A reservation made inside a transaction follows the transaction: it is committed when the
+ * transaction commits and released when it rolls back. The command files run in transactions only when checkpoints
+ * are enabled, see {@link FileProcessor}; otherwise every statement commits at once and so does the reservation
+ */
+public class StockReservationService {
+
+    /**
+     * The in-memory stock of the products
+     */
+    private final InventoryIndex inventory;
+
+    /**
+     * The constructor initializes the fields
+     * @param inventory The in-memory stock of the products
+     */
+    public StockReservationService(InventoryIndex inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Method used for reserving a quantity of a product
+     * @param productName The name of the product
+     * @param quantity The ordered quantity
+     * @return Returns the reservation, or null if the product does not exist or is under-stocked
+     */
+    public Reservation reserve(String productName, int quantity) {
+        return inventory.take(productName, quantity);
+    }
+
+    /**
+     * Method used for finishing a reservation once the order is written: if the current thread has a transaction the
+     * change of the quantity is written in the transaction and the reservation is committed or released with it,
+     * otherwise it is committed now
+     * @param reservation The reservation
+     */
+    public void complete(Reservation reservation) {
+        if(!DBConnection.inTransaction()) {
+            commit(reservation);
+            return;
+        }
+        inventory.write(reservation.getProductId(), -reservation.getQuantity());
+        DBConnection.afterTransaction(committed -> {
+            if(committed) reservation.finish(Reservation.COMMITTED);
+            else release(reservation);
+        });
+    }
+
+    /**
+     * Method used for committing a reservation: the quantity stays taken and is written to the database. A finished
+     * reservation is ignored
+     * @param reservation The reservation
+     */
+    public void commit(Reservation reservation) {
+        if(reservation.finish(Reservation.COMMITTED)) inventory.write(reservation.getProductId(), -reservation.getQuantity());
+    }
+
+    /**
+     * Method used for releasing a reservation: the quantity is put back into the stock. Nothing was written for the
+     * reservation, or it was rolled back with its transaction, so nothing is written to the database. A finished
+     * reservation is ignored
+     * @param reservation The reservation
+     */
+    public void release(Reservation reservation) {
+        if(reservation.finish(Reservation.RELEASED)) inventory.give(reservation.getProductName(), reservation.getQuantity());
+    }
+
+    /**
+     * A quantity of a product taken out of the stock for an order, together with the id and the price of the product
+     * at the moment of the reservation
+     */
+    public static class Reservation {
+        /**
+         * The state of a reservation which is neither committed nor released
+         */
+        private static final int RESERVED = 0;
+        /**
+         * The state of a committed reservation
+         */
+        private static final int COMMITTED = 1;
+        /**
+         * The state of a released reservation
+         */
+        private static final int RELEASED = 2;
+        /**
+         * The name of the product
+         */
+        private final String productName;
+        /**
+         * The primary key of the product
+         */
+        private final int productId;
+        /**
+         * The price of the product
+         */
+        private final double price;
+        /**
+         * The reserved quantity
+         */
+        private final int quantity;
+        /**
+         * The updater of the state, so a reservation needs no separate atomic object
+         */
+        private static final AtomicIntegerFieldUpdater<Reservation> STATE = AtomicIntegerFieldUpdater.newUpdater(Reservation.class, "state");
+        /**
+         * The state of the reservation
+         */
+        private volatile int state = RESERVED;
+
+        Reservation(String productName, int productId, double price, int quantity) {
+            this.productName = productName;
+            this.productId = productId;
+            this.price = price;
+            this.quantity = quantity;
+        }
+
+        /**
+         * Method used for moving the reservation to a final state, only once
+         * @param finalState The final state
+         * @return Returns true if the reservation was not finished before
+         */
+        private boolean finish(int finalState) {
+            return STATE.compareAndSet(this, RESERVED, finalState);
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
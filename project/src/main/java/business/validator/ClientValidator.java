@@ -7,17 +7,30 @@ import model.Client;
  * Validator used for checking if a client already exists in the database table
  */
 public class ClientValidator implements Validator<Client> {
+    /**
+     * The data access object used for searching the clients
+     */
+    private final ClientDAO clientDAO;
+
+    /**
+     * The constructor initializes the data access object, shared with the rest of the application
+     * @param clientDAO The data access object for Client
+     */
+    public ClientValidator(ClientDAO clientDAO) {
+        this.clientDAO = clientDAO;
+    }
+
     /**
      * @param client The client to be checked
-     * @throws IllegalArgumentException If the client already exists in the table
+     * @return Returns {@link ValidationResult.Status#DUPLICATE_NAME} if the client already exists in the table. The
+     * existing client is not read
      */
     @Override
     /**
      * The method used for validation
      */
-    public void validate(Client client) {
-        ClientDAO clientDAO = new ClientDAO();
-        if(clientDAO.findByName(client.getName()) != null)
-            throw new IllegalArgumentException("The client with that name already exists in the database");
+    public ValidationResult<Client> validate(Client client) {
+        if(clientDAO.exists("name", client.getName())) return ValidationResult.duplicate(ValidationResult.Status.DUPLICATE_NAME, null);
+        return ValidationResult.valid();
     }
 }
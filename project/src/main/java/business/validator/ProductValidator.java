@@ -7,18 +7,33 @@ import model.Product;
  * Validator used for checking if a product already exists in the database table
  */
 public class ProductValidator implements Validator<Product> {
+    /**
+     * The data access object used for searching the products
+     */
+    private final ProductDAO productDAO;
+
+    /**
+     * The constructor initializes the data access object, shared with the rest of the application
+     * @param productDAO The data access object for Product
+     */
+    public ProductValidator(ProductDAO productDAO) {
+        this.productDAO = productDAO;
+    }
+
     /**
      * @param product The product to be checked
-     * @throws IllegalArgumentException If the product already exists in the table
+     * @return Returns {@link ValidationResult.Status#DUPLICATE_NAME} if a product with the same name and price already
+     * exists in the table, {@link ValidationResult.Status#DUPLICATE_DIFFERENT_PRICE} if one exists with another price,
+     * with the existing product attached
      */
     @Override
     /**
      * The method used for validation
      */
-    public void validate(Product product) {
-        ProductDAO productDAO = new ProductDAO();
-        if(productDAO.findByProductName(product.getProductName()) != null &&
-                productDAO.findByProductName(product.getProductName()).getPrice().equals(product.getPrice()))
-            throw new IllegalArgumentException("The product with that name already exists in the database");
+    public ValidationResult<Product> validate(Product product) {
+        Product existing = productDAO.findByProductName(product.getProductName());
+        if(existing == null) return ValidationResult.valid();
+        if(existing.getPrice().equals(product.getPrice())) return ValidationResult.duplicate(ValidationResult.Status.DUPLICATE_NAME, existing);
+        return ValidationResult.duplicate(ValidationResult.Status.DUPLICATE_DIFFERENT_PRICE, existing);
     }
 }
@@ -0,0 +1,88 @@
+package business.validator;
+
+/**
+ * The result of a validation: whether the object is valid and, if it duplicates an existing one, the kind of duplicate
+ * and the existing object, so it does not have to be read again
+ * @param <T> the object`s class which was validated
+ */
+public class ValidationResult<T> {
+
+    /**
+     * The kinds of validation results
+     */
+    public enum Status {
+        /**
+         * The object does not duplicate an existing one
+         */
+        VALID,
+        /**
+         * An object with the same name already exists
+         */
+        DUPLICATE_NAME,
+        /**
+         * An object with the same name but a different price already exists
+         */
+        DUPLICATE_DIFFERENT_PRICE
+    }
+
+    /**
+     * The shared result of the valid objects
+     */
+    private static final ValidationResult<?> VALID = new ValidationResult<>(Status.VALID, null);
+
+    /**
+     * The kind of the result
+     */
+    private final Status status;
+
+    /**
+     * The existing object, null if the object is valid or the validator did not read the existing object
+     */
+    private final T existing;
+
+    /**
+     * The constructor initializes the fields
+     * @param status The kind of the result
+     * @param existing The existing object, or null
+     */
+    private ValidationResult(Status status, T existing) {
+        this.status = status;
+        this.existing = existing;
+    }
+
+    /**
+     * Method used for getting the result of a valid object
+     * @param <T> the object`s class which was validated
+     * @return Returns the shared valid result
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ValidationResult<T> valid() {
+        return (ValidationResult<T>) VALID;
+    }
+
+    /**
+     * Method used for creating the result of an object duplicating an existing one
+     * @param status The kind of duplicate
+     * @param existing The existing object, or null if it was not read
+     * @param <T> the object`s class which was validated
+     * @return Returns the result
+     */
+    public static <T> ValidationResult<T> duplicate(Status status, T existing) {
+        return new ValidationResult<>(status, existing);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public T getExisting() {
+        return existing;
+    }
+
+    /**
+     * @return Returns true if the object does not duplicate an existing one
+     */
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+}
@@ -8,6 +8,7 @@ public interface Validator<T> {
     /**
      * The method will validate the given parameter
      * @param t the object to be validated
+     * @return Returns the result of the validation
      */
-    void validate(T t);
+    ValidationResult<T> validate(T t);
 }
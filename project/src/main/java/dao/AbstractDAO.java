@@ -1,16 +1,27 @@
 package dao;
 
 import dbaccess.DBConnection;
+import dbaccess.TableVersions;
+import model.Index;
 import model.Table;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +41,48 @@ public class AbstractDAO<T> {
      */
     private final Class<T> type;
 
+    /**
+     * The shard index used for tables stored in the primary database
+     */
+    protected static final int UNSHARDED = -1;
+
+    /**
+     * The fields which can be used for selecting rows without scanning the whole table: the primary key and the first
+     * column of every declared index
+     */
+    private final Set<String> indexedFields = new HashSet<>();
+
+    /**
+     * The fields not indexed which were already used for selecting, so each of them is logged only once
+     */
+    private final Set<String> unindexedFields = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The names of the table columns, null until they are read for the first time
+     */
+    private volatile ArrayList<String> columns;
+
+    /**
+     * The names of the fields stored in the columns other than the primary key, null until they are needed
+     */
+    private volatile String[] valueFields;
+
+    /**
+     * The getters of the {@link #valueFields value fields}
+     */
+    private volatile Method[] valueGetters;
+
+    /**
+     * The values of the fields of every object as last read from or written to the database, used for finding the
+     * changed fields. The objects are weakly referenced, so the snapshots go away with the objects
+     */
+    private final Map<T, Object[]> snapshots = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * The update queries, by the set of changed fields, one bit per {@link #valueFields value field}
+     */
+    private final Map<Long, String> updateQueries = new ConcurrentHashMap<>();
+
     /**
      * The constructor initialize the {@link #type type} with the class object of the used model. That constructor is usable
      * only if this class is inherited by another class
@@ -38,6 +91,96 @@ public class AbstractDAO<T> {
     public AbstractDAO() {
         LOGGER.setLevel(Level.WARNING);
         this.type = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+        Table table = type.getAnnotation(Table.class);
+        indexedFields.add(table.pkField());
+        for(Index index : table.indexes()) indexedFields.add(index.columns()[0]);
+    }
+
+    /**
+     * Method used for warming up the DAO: the select query by primary key is executed once, with a key which matches no
+     * row, so the statements, the reflection and the driver code paths are ready before the first command
+     * @param preload True if the {@link #getColumns() columns} are read as well
+     */
+    public void warmUp(boolean preload) {
+        findByField(type.getAnnotation(Table.class).pkField(), -1);
+        if(preload) getColumns();
+    }
+
+    /**
+     * Method used for checking that selecting by a field uses an index. A query by a field which is not indexed would
+     * scan the whole table, so it is logged once per field unless the indexes are ignored by the {@link SchemaManager}
+     * @param field The field used for selecting
+     */
+    protected void checkIndexed(String field) {
+        if(SchemaManager.isEnforced() && !indexedFields.contains(field) && unindexedFields.add(field))
+            LOGGER.log(Level.WARNING, "Selecting from " + type.getAnnotation(Table.class).tableName() + " by " + field +
+                    " scans the whole table, an index should be declared on it");
+    }
+
+    /**
+     * Method used for checking if the rows of {@link #type} are split across shards
+     * @return Returns true if shards are configured and the table has a shard key
+     */
+    protected boolean isSharded() {
+        return DBConnection.getShardCount() > 0 && !type.getAnnotation(Table.class).shardKey().isEmpty();
+    }
+
+    /**
+     * Method used for finding the shards which may store rows with the given value of a field. The primary key and the
+     * shard key identify a single shard, any other field needs every shard
+     * @param field The field used for selecting
+     * @param value The value used for selecting
+     * @return Returns the indexes of the shards, or {@link #UNSHARDED} if the table is not sharded
+     */
+    protected int[] shardsFor(String field, Object value) {
+        if(!isSharded()) return new int[]{UNSHARDED};
+        Table table = type.getAnnotation(Table.class);
+        if(value != null && (field.equals(table.pkField()) || field.equals(table.shardKey())))
+            return new int[]{DBConnection.shardOf(value)};
+        int[] shards = new int[DBConnection.getShardCount()];
+        for(int i = 0; i < shards.length; i++) shards[i] = i;
+        return shards;
+    }
+
+    /**
+     * Method used for finding the shard which stores the given object. Objects without a primary key are placed by
+     * the value of the shard key
+     * @param t The object used
+     * @return Returns the index of the shard, or {@link #UNSHARDED} if the table is not sharded
+     */
+    protected int shardOf(T t) {
+        if(!isSharded()) return UNSHARDED;
+        Object key = getFieldValue(t, "primaryKey");
+        if(key == null) key = getFieldValue(t, type.getAnnotation(Table.class).shardKey());
+        return DBConnection.shardOf(key);
+    }
+
+    /**
+     * Method used for getting a connection to a shard
+     * @param shard The index of the shard, or {@link #UNSHARDED}
+     * @param readOnly True if the connection is used only for reading
+     * @return Returns the connection
+     */
+    protected Connection getConnection(int shard, boolean readOnly) {
+        if(shard != UNSHARDED) return DBConnection.getShardConnection(shard);
+        return readOnly ? DBConnection.getReadConnection() : DBConnection.getConnection();
+    }
+
+    /**
+     * Method used for reading a field of an object through its getter
+     * @param t The object used
+     * @param field The name of the field
+     * @return Returns the value of the field, null if it could not be read
+     */
+    protected Object getFieldValue(T t, String field) {
+        try {
+            return new PropertyDescriptor(field, type, "get" + Character.toUpperCase(field.charAt(0)) + field.substring(1), null)
+                    .getReadMethod().invoke(t);
+        } catch (IntrospectionException e) { LOGGER.log(Level.WARNING, "An exception occurs during introspection", e);
+        } catch (IllegalAccessException e) { LOGGER.log(Level.WARNING, "The provided class is not accessible", e);
+        } catch (InvocationTargetException e) { LOGGER.log(Level.WARNING, "The invoked method throws exceptions", e);
+        }
+        return null;
     }
 
     /**
@@ -46,6 +189,7 @@ public class AbstractDAO<T> {
      * @return Returns the query as a String and needs to be processed by a PreparedStatement
      */
     protected String createSelectQuery(String field) {
+        checkIndexed(field);
         return "SELECT " +
                 " * " +
                 " FROM " +
@@ -79,41 +223,38 @@ public class AbstractDAO<T> {
         return query.toString();
     }
 
-    /**
-     * Method used for creating an update query
-     * @param selectField The field used for selecting the data which will be updated
-     * @return Returns the query as a String. Needs to be processed by a PreparedStatement
-     */
-    protected String createUpdateQuery(String selectField) {
-        StringBuilder query = new StringBuilder();
-
-        query.append("UPDATE ").append(type.getAnnotation(Table.class).tableName()).append(" SET ");
-        for(Field field : type.getDeclaredFields()) {
-            if(field.getName().equals("primaryKey")) continue;
-            query.append(field.getName()).append("= ?,");
-        }
-        query.deleteCharAt(query.length() - 1);
-        query.append(" WHERE ").append(selectField).append("= ?");
-        return query.toString();
-    }
-
     /**
      * Method used for creating a delete query
      * @param field The used for selecting which rows to be deleted
      * @return Returns the query as a String. Needs to be processed by a PreparedStatement
      */
     protected String createDeleteQuery(String field) {
+        checkIndexed(field);
         return "DELETE FROM " + type.getAnnotation(Table.class).tableName() + " " + "WHERE " + field + " = ?";
     }
 
 
+    /**
+     * Method used for getting all rows of the table. If the table is sharded every shard is queried in parallel
+     * @return Returns an ArrayList of all rows
+     */
     public ArrayList<T> findAll() {
+        if(!isSharded()) return findAll(UNSHARDED);
+        return gather(DBConnection.scatter(this::findAll));
+    }
+
+    /**
+     * Method used for getting all rows of the table stored in a shard
+     * @param shard The index of the shard, or {@link #UNSHARDED}
+     * @return Returns an ArrayList of the rows
+     */
+    protected ArrayList<T> findAll(int shard) {
         Connection connection;
         Statement statement = null;
         ResultSet resultSet = null;
         String query = "SELECT * FROM " + type.getAnnotation(Table.class).tableName();
 
-        connection = DBConnection.getConnection();
+        connection = getConnection(shard, true);
         try {
             statement = connection.createStatement();
             resultSet = statement.executeQuery(query);
@@ -121,13 +262,76 @@ public class AbstractDAO<T> {
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, "Unable to access the database or create statement / execute query", e);
         } finally {
-            DBConnection.close(connection);
-            DBConnection.close(statement);
             DBConnection.close(resultSet);
+            DBConnection.close(statement);
+            DBConnection.close(connection);
         }
         return null;
     }
 
+    /**
+     * Method used for streaming all rows of the table to a handler, in the order of the columns of
+     * {@link #getColumns()}. The rows are read from a streaming cursor, so they are never held in memory all at once.
+     * If the table is sharded the shards are streamed one after the other
+     * @param handler The handler receiving the rows
+     * @return Returns true if all rows were streamed
+     */
+    public boolean streamAll(RowHandler handler) {
+        String query = "SELECT * FROM " + type.getAnnotation(Table.class).tableName();
+        if(!isSharded()) return stream(UNSHARDED, query, handler);
+        for(int shard = 0; shard < DBConnection.getShardCount(); shard++)
+            if(!stream(shard, query, handler)) return false;
+        return true;
+    }
+
+    /**
+     * Method used for streaming the rows of a query to a handler through a forward only cursor, fetching the rows
+     * from the server one at a time
+     * @param shard The index of the shard, or {@link #UNSHARDED}
+     * @param query The query to be executed
+     * @param handler The handler receiving the rows
+     * @return Returns true if all rows were streamed
+     */
+    protected boolean stream(int shard, String query, RowHandler handler) {
+        Connection connection = getConnection(shard, true);
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            resultSet = statement.executeQuery(query);
+            Object[] values = new Object[resultSet.getMetaData().getColumnCount()];
+            while(resultSet.next()) {
+                for(int i = 0; i < values.length; i++) values[i] = resultSet.getObject(i + 1);
+                handler.handle(values);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to access the database or create statement / execute query", e);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write the streamed rows", e);
+        } finally {
+            DBConnection.close(resultSet);
+            DBConnection.close(statement);
+            DBConnection.close(connection);
+        }
+        return false;
+    }
+
+    /**
+     * Method used for merging the rows obtained from several shards
+     * @param parts The rows of every shard
+     * @return Returns an ArrayList with all rows, or null if a shard could not be queried
+     */
+    protected <R> ArrayList<R> gather(List<ArrayList<R>> parts) {
+        ArrayList<R> result = new ArrayList<>();
+        for(ArrayList<R> part : parts) {
+            if(part == null) return null;
+            result.addAll(part);
+        }
+        return result;
+    }
+
     /**
      * Method used for creating objects of type {@link #type}
      * @param resultSet from which the objects will be created
@@ -152,6 +356,7 @@ public class AbstractDAO<T> {
                         method = propertyDescriptor.getWriteMethod();
                         method.invoke(instance, value);
                     }
+                    remember(instance);
                     result.add(instance);
                 } catch (InstantiationException e) { LOGGER.log(Level.WARNING, "Unable to instantiate a new object", e);
                 } catch (IllegalAccessException e) { LOGGER.log(Level.WARNING, "The provided class is not accessible", e);
@@ -170,11 +375,24 @@ public class AbstractDAO<T> {
      * @return Returns an ArrayList of found rows
      */
     public ArrayList<T> findByField(String field, Object value) {
+        int[] shards = shardsFor(field, value);
+        if(shards.length == 1) return findByField(shards[0], field, value);
+        return gather(DBConnection.scatter(shard -> findByField(shard, field, value)));
+    }
+
+    /**
+     * Method used for searching data from a shard
+     * @param shard The index of the shard, or {@link #UNSHARDED}
+     * @param field The field used for selecting
+     * @param value The value used for selecting
+     * @return Returns an ArrayList of found rows
+     */
+    protected ArrayList<T> findByField(int shard, String field, Object value) {
         Connection connection;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
         String query = createSelectQuery(field);
-        connection = DBConnection.getConnection();
+        connection = getConnection(shard, true);
         try {
             statement = connection.prepareStatement(query);
             statement.setObject(1, value);
@@ -183,9 +401,104 @@ public class AbstractDAO<T> {
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, "Unable to access the database", e);
         } finally {
-            DBConnection.close(connection);
+            DBConnection.close(resultSet);
             DBConnection.close(statement);
+            DBConnection.close(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Method used for checking if a row with the specified field exists, without reading the row
+     * @param field The field used for selecting
+     * @param value The value used for selecting
+     * @return Returns true if such a row exists, false if none exists or the database could not be read
+     */
+    public boolean exists(String field, Object value) {
+        checkIndexed(field);
+        String query = "SELECT 1 FROM " + type.getAnnotation(Table.class).tableName() + " WHERE " + field + " = ? LIMIT 1";
+        for(int shard : shardsFor(field, value)) {
+            ArrayList<Object[]> rows = query(shard, query, value, 1);
+            if(rows != null && !rows.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method used for counting the rows with the specified field, without reading the rows
+     * @param field The field used for selecting
+     * @param value The value used for selecting
+     * @return Returns the number of rows, or -1 if the database could not be read
+     */
+    public long count(String field, Object value) {
+        checkIndexed(field);
+        String query = "SELECT COUNT(*) FROM " + type.getAnnotation(Table.class).tableName() + " WHERE " + field + " = ?";
+        long count = 0;
+        for(int shard : shardsFor(field, value)) {
+            ArrayList<Object[]> rows = query(shard, query, value, 1);
+            if(rows == null || rows.isEmpty()) return -1;
+            count += ((Number) rows.get(0)[0]).longValue();
+        }
+        return count;
+    }
+
+    /**
+     * Method used for reading only some columns of the rows with the specified field, without creating objects
+     * @param field The field used for selecting
+     * @param value The value used for selecting
+     * @param columns The columns to be read
+     * @return Returns the values of the columns of every found row, or null if the database could not be read
+     */
+    public ArrayList<Object[]> project(String field, Object value, String... columns) {
+        checkIndexed(field);
+        String query = "SELECT " + String.join(", ", columns) + " FROM " + type.getAnnotation(Table.class).tableName() +
+                " WHERE " + field + " = ?";
+        List<ArrayList<Object[]>> parts = new ArrayList<>();
+        for(int shard : shardsFor(field, value)) parts.add(query(shard, query, value, columns.length));
+        return gather(parts);
+    }
+
+    /**
+     * Method used for reading the first row found by {@link #project(String, Object, String...)}
+     * @param field The field used for selecting
+     * @param value The value used for selecting
+     * @param columns The columns to be read
+     * @return Returns the values of the columns, or null if no row was found or the database could not be read
+     */
+    public Object[] projectFirst(String field, Object value, String... columns) {
+        ArrayList<Object[]> rows = project(field, value, columns);
+        return rows == null || rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Method used for executing a query with one parameter on a shard and reading the values of its rows
+     * @param shard The index of the shard, or {@link #UNSHARDED}
+     * @param query The query
+     * @param value The value of the parameter
+     * @param width The number of columns selected by the query
+     * @return Returns the values of every row, or null if the database could not be read
+     */
+    private ArrayList<Object[]> query(int shard, String query, Object value, int width) {
+        Connection connection = getConnection(shard, true);
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement(query);
+            statement.setObject(1, value);
+            resultSet = statement.executeQuery();
+            ArrayList<Object[]> rows = new ArrayList<>();
+            while(resultSet.next()) {
+                Object[] row = new Object[width];
+                for(int i = 0; i < width; i++) row[i] = resultSet.getObject(i + 1);
+                rows.add(row);
+            }
+            return rows;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to access the database", e);
+        } finally {
             DBConnection.close(resultSet);
+            DBConnection.close(statement);
+            DBConnection.close(connection);
         }
         return null;
     }
@@ -203,30 +516,42 @@ public class AbstractDAO<T> {
      * Method used for deleting rows with specified field
      * @param field The field used for deletion
      * @param value The value of the field
+     * @return Returns true if the delete was executed on every database storing such rows
      */
-    public void deleteByField(String field, Object value) {
+    public boolean deleteByField(String field, Object value) {
         String query = createDeleteQuery(field);
-        Connection connection;
-        PreparedStatement statement = null;
-        connection = DBConnection.getConnection();
-        try {
-            statement = connection.prepareStatement(query);
-            statement.setObject(1, value);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Unable to access the database", e);
-        } finally {
-            DBConnection.close(connection);
-            DBConnection.close(statement);
+        boolean deleted = true;
+        for(int shard : shardsFor(field, value)) {
+            Connection connection;
+            PreparedStatement statement = null;
+            connection = getConnection(shard, false);
+            if(connection == null) {
+                deleted = false;
+                continue;
+            }
+            try {
+                statement = connection.prepareStatement(query);
+                statement.setObject(1, value);
+                if(statement.executeUpdate() > 0) TableVersions.bump(type.getAnnotation(Table.class).tableName());
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Unable to access the database", e);
+                deleted = false;
+            } finally {
+                DBConnection.close(statement);
+                DBConnection.close(connection);
+            }
         }
+        return deleted;
     }
 
     /**
      * Method used for inserting an object to the database
      * @param t The object to be inserted
+     * @return Returns true if the object was inserted
      */
-    public void insert(T t) {
-        Connection connection = DBConnection.getConnection();
+    public boolean insert(T t) {
+        Connection connection = getConnection(shardOf(t), false);
+        if(connection == null) return false;
         PreparedStatement statement = null;
         String query = createInsertQuery();
         try {
@@ -237,6 +562,7 @@ public class AbstractDAO<T> {
             statement.setObject(1, pk);
             setQuery(t, statement, 2);
             statement.executeUpdate();
+            TableVersions.bump(type.getAnnotation(Table.class).tableName());
             if (type.getAnnotation(Table.class).autoIncrement()) {
                 ResultSet resultSet = statement.getGeneratedKeys();
                 method = type.getDeclaredMethod("setPK", Integer.class);
@@ -244,52 +570,144 @@ public class AbstractDAO<T> {
                 if(resultSet.next()) method.invoke(t, resultSet.getInt(1));
                 DBConnection.close(resultSet);
             }
+            remember(t);
+            return true;
         } catch (IntrospectionException e) { LOGGER.log(Level.WARNING, "An exception occurs during introspection", e);
         } catch (InvocationTargetException e) { LOGGER.log(Level.WARNING, "The invoked method throws exceptions", e);
         } catch (IllegalAccessException e) { LOGGER.log(Level.WARNING, "The provided class is not accessible", e);
         } catch (NoSuchMethodException e) { LOGGER.log(Level.WARNING, "The method is not found", e);
         } catch (SQLException e) { LOGGER.log(Level.WARNING, "Unable to access the database", e);
         } finally {
-            DBConnection.close(connection);
             DBConnection.close(statement);
+            DBConnection.close(connection);
         }
+        return false;
     }
 
     /**
-     * Method used for updating the object specified
+     * Method used for updating the object specified. Only the fields changed since the object was read or written are
+     * updated, and nothing is executed if no field changed. An object which was not read through this DAO has every
+     * field updated
      * @param t The updated object
+     * @return Returns true if the object was updated or had no changed field
      */
-    public void update(T t) {
-        Connection connection = DBConnection.getConnection();
+    public boolean update(T t) {
+        Object[] values = readValues(t);
+        if(values == null) return false;
+        Object[] snapshot = snapshots.get(t);
+        long changed = 0;
+        for(int i = 0; i < values.length; i++)
+            if(snapshot == null || !Objects.equals(values[i], snapshot[i])) changed |= 1L << i;
+        if(changed == 0) return true;
+        Connection connection = getConnection(shardOf(t), false);
+        if(connection == null) return false;
         PreparedStatement statement = null;
-        Method method;
         int count = 1;
-        PropertyDescriptor propertyDescriptor;
-        String query = createUpdateQuery(type.getAnnotation(Table.class).pkField());
+        String query = updateQueries.computeIfAbsent(changed, this::createUpdateQuery);
         try {
             statement = connection.prepareStatement(query);
-            count = setQuery(t, statement, count);
-            propertyDescriptor = new PropertyDescriptor("primaryKey", type);
-            method = propertyDescriptor.getReadMethod();
-            Object pk = method.invoke(t);
-            statement.setObject(count, pk);
-            statement.executeUpdate();
+            for(int i = 0; i < values.length; i++) if((changed & 1L << i) != 0) statement.setObject(count++, values[i]);
+            statement.setObject(count, getFieldValue(t, "primaryKey"));
+            if(statement.executeUpdate() > 0) TableVersions.bump(type.getAnnotation(Table.class).tableName());
+            keep(t, values);
+            return true;
         } catch (SQLException e) { LOGGER.log(Level.WARNING, "Unable to access the database", e);
-        } catch (IntrospectionException e) { LOGGER.log(Level.WARNING, "An exception occurs during introspection", e);
-        } catch (IllegalAccessException e) { LOGGER.log(Level.WARNING, "The provided class is not accessible", e);
-        } catch (InvocationTargetException e) { LOGGER.log(Level.WARNING, "The invoked method throws exceptions", e);
         } finally {
-            DBConnection.close(connection);
             DBConnection.close(statement);
+            DBConnection.close(connection);
+        }
+        return false;
+    }
+
+    /**
+     * Method used for creating an update query setting only some of the fields
+     * @param changed The fields to be set, one bit per {@link #valueFields value field}
+     * @return Returns the query as a String. Needs to be processed by a PreparedStatement
+     */
+    private String createUpdateQuery(long changed) {
+        StringBuilder query = new StringBuilder();
+        query.append("UPDATE ").append(type.getAnnotation(Table.class).tableName()).append(" SET ");
+        String[] fields = valueFields;
+        for(int i = 0; i < fields.length; i++) if((changed & 1L << i) != 0) query.append(fields[i]).append("= ?,");
+        query.deleteCharAt(query.length() - 1);
+        query.append(" WHERE ").append(type.getAnnotation(Table.class).pkField()).append("= ?");
+        return query.toString();
+    }
+
+    /**
+     * Method used for finding the fields stored in the columns other than the primary key, and their getters
+     * @return Returns true if the getters were found
+     */
+    private boolean findValueFields() {
+        if(valueGetters != null) return true;
+        List<String> fields = new ArrayList<>();
+        List<Method> getters = new ArrayList<>();
+        try {
+            for(Field field : type.getDeclaredFields()) {
+                if(field.getName().equals("primaryKey") || field.isSynthetic()) continue;
+                fields.add(field.getName());
+                getters.add(new PropertyDescriptor(field.getName(), type).getReadMethod());
+            }
+        } catch (IntrospectionException e) {
+            LOGGER.log(Level.WARNING, "An exception occurs during introspection", e);
+            return false;
         }
+        if(fields.size() > Long.SIZE) throw new IllegalStateException(type.getName() + " has more than " + Long.SIZE + " fields");
+        valueFields = fields.toArray(new String[0]);
+        valueGetters = getters.toArray(new Method[0]);
+        return true;
+    }
+
+    /**
+     * Method used for reading the values of the fields stored in the columns other than the primary key
+     * @param t The object used
+     * @return Returns the values, in the order of the {@link #valueFields value fields}, or null if they could not be read
+     */
+    private Object[] readValues(T t) {
+        if(!findValueFields()) return null;
+        Method[] getters = valueGetters;
+        Object[] values = new Object[getters.length];
+        try {
+            for(int i = 0; i < getters.length; i++) values[i] = getters[i].invoke(t);
+        } catch (IllegalAccessException e) { LOGGER.log(Level.WARNING, "The provided class is not accessible", e);
+            return null;
+        } catch (InvocationTargetException e) { LOGGER.log(Level.WARNING, "The invoked method throws exceptions", e);
+            return null;
+        }
+        return values;
+    }
+
+    /**
+     * Method used for remembering the values of an object as stored in the database, so a later update writes only
+     * the changed fields
+     * @param t The object read from or written to the database
+     */
+    protected void remember(T t) {
+        Object[] values = readValues(t);
+        if(values != null) keep(t, values);
+    }
+
+    /**
+     * Method used for storing the snapshot of an object. If the current thread has a transaction, the snapshot is
+     * dropped when the transaction is rolled back, so the next update writes every field again
+     * @param t The object read from or written to the database
+     * @param values The values of the object, in the order of the {@link #valueFields value fields}
+     */
+    private void keep(T t, Object[] values) {
+        snapshots.put(t, values);
+        if(DBConnection.inTransaction()) DBConnection.afterTransaction(committed -> {
+            if(!committed) snapshots.remove(t);
+        });
     }
 
     /**
      * Method used for deleting an object
      * @param t The object to be deleted
+     * @return Returns true if the row of the object was deleted
      */
-    public void delete(T t) {
-        Connection connection = DBConnection.getConnection();
+    public boolean delete(T t) {
+        Connection connection = getConnection(shardOf(t), false);
+        if(connection == null) return false;
         PreparedStatement statement = null;
         PropertyDescriptor propertyDescriptor;
         Method method;
@@ -300,15 +718,18 @@ public class AbstractDAO<T> {
             method = propertyDescriptor.getReadMethod();
             Object pk = method.invoke(t);
             statement.setObject(1, pk);
-            statement.executeUpdate();
+            if(statement.executeUpdate() == 0) return false;
+            TableVersions.bump(type.getAnnotation(Table.class).tableName());
+            return true;
         } catch (SQLException e) { LOGGER.log(Level.WARNING, "Unable to access the database", e);
         } catch (IntrospectionException e) { LOGGER.log(Level.WARNING, "An exception occurs during introspection", e);
         } catch (IllegalAccessException e) { LOGGER.log(Level.WARNING, "The provided class is not accessible", e);
         } catch (InvocationTargetException e) { LOGGER.log(Level.WARNING, "The invoked method throws exceptions", e);
         } finally {
-            DBConnection.close(connection);
             DBConnection.close(statement);
+            DBConnection.close(connection);
         }
+        return false;
     }
 
     /**
@@ -339,23 +760,26 @@ public class AbstractDAO<T> {
     }
 
     /**
-     * Method used for obtaining the name of the table columns
+     * Method used for obtaining the name of the table columns. The columns are read once and then reused
      * @return Returns an ArrayList of Strings representing the name of the columns
      */
     public ArrayList<String> getColumns() {
-        Connection connection = DBConnection.getConnection();
+        ArrayList<String> cached = columns;
+        if(cached != null) return new ArrayList<>(cached);
+        Connection connection = getConnection(isSharded() ? 0 : UNSHARDED, true);
         Statement statement = null;
         ResultSet resultSet = null;
-        String query = "SELECT * FROM " + type.getAnnotation(Table.class).tableName();
+        String query = "SELECT * FROM " + type.getAnnotation(Table.class).tableName() + " LIMIT 0";
         try {
             statement = connection.createStatement();
             resultSet = statement.executeQuery(query);
-            return getColumns(resultSet);
+            columns = getColumns(resultSet);
+            return new ArrayList<>(columns);
         } catch (SQLException e) { LOGGER.log(Level.WARNING, "Unable to access the database", e);
         } finally {
-            DBConnection.close(connection);
-            DBConnection.close(statement);
             DBConnection.close(resultSet);
+            DBConnection.close(statement);
+            DBConnection.close(connection);
         }
         return null;
     }
@@ -0,0 +1,34 @@
+package dao;
+
+import model.Checkpoint;
+
+import java.util.ArrayList;
+
+/**
+ * The class represents an implementation of AbstractDAO class. It provides access to checkpoints table from the
+ * database.
+ */
+public class CheckpointDAO extends AbstractDAO<Checkpoint> {
+
+    /**
+     * Method used for finding the checkpoint of a command file
+     * @param fileName The canonical path of the command file
+     * @return Returns the checkpoint, or null if the file has no checkpoint
+     */
+    public Checkpoint findByFileName(String fileName) {
+        ArrayList<Checkpoint> checkpoints = findByField("fileName", fileName);
+        if(checkpoints == null || checkpoints.size() == 0) return null;
+        return checkpoints.get(0);
+    }
+
+    /**
+     * Method used for saving a checkpoint, inserting it the first time and updating it afterwards
+     * @param checkpoint The checkpoint to be saved
+     * @param exists True if the checkpoint is already stored in the table
+     * @return Returns true if the checkpoint was written
+     */
+    public boolean save(Checkpoint checkpoint, boolean exists) {
+        return exists ? update(checkpoint) : insert(checkpoint);
+    }
+
+}
@@ -2,6 +2,8 @@ package dao;
 
 import model.Client;
 
+import java.util.ArrayList;
+
 /**
  * The class represents an implementation of AbstractDAO class. It provides methods for finding and deleting rows based
  * on the client`s name
@@ -14,8 +16,19 @@ public class ClientDAO extends AbstractDAO<Client> {
      * @return Returns the client with the given name
      */
     public Client findByName(String name) {
-        if(findByField("name", name).size() == 0) return null;
-        return findByField("name", name).get(0);
+        ArrayList<Client> clients = findByField("name", name);
+        if(clients == null || clients.size() == 0) return null;
+        return clients.get(0);
+    }
+
+    /**
+     * Method used for finding the primary key of the client with the given name, reading only the id column
+     * @param name The name of the client to be searched
+     * @return Returns the primary key of the client, or null if there is no such client
+     */
+    public Integer findIdByName(String name) {
+        Object[] row = projectFirst("name", name, "id");
+        return row == null ? null : ((Number) row[0]).intValue();
     }
 
     /**
@@ -0,0 +1,10 @@
+package dao;
+
+import model.sales.ClientRevenue;
+
+/**
+ * The class represents an implementation of AbstractDAO class. This class provides access to clientrevenue summary
+ * table from the database.
+ */
+public class ClientRevenueDAO extends AbstractDAO<ClientRevenue> {
+}
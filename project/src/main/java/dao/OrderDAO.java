@@ -1,13 +1,20 @@
 package dao;
 
 import dbaccess.DBConnection;
+import model.Product;
 import model.order.Order;
 import model.order.OrderHelper;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 /**
@@ -16,57 +23,200 @@ import java.util.logging.Level;
  */
 public class OrderDAO extends AbstractDAO<Order> {
 
+    /**
+     * The query used for the rows of the order report, when the database is not sharded
+     */
+    private static final String ORDER_HELPER_QUERY = "SELECT itemorders.id as id, `name`, productName, itemorders.quantity FROM clients JOIN orders ON clients.id = orders.clientId" +
+            " JOIN itemorders ON itemorders.orderId = orders.id JOIN products ON itemorders.productId = products.id";
+
+    /**
+     * The query used on every shard for the rows of the order report. The products are not sharded, so their names are
+     * resolved after gathering the rows
+     */
+    private static final String SHARD_ORDER_HELPER_QUERY = "SELECT itemorders.id as id, `name`, productId, itemorders.quantity FROM clients JOIN orders ON clients.id = orders.clientId" +
+            " JOIN itemorders ON itemorders.orderId = orders.id";
+
+    /**
+     * The query used on every shard, or on the database if it is not sharded, for the units bought by every client
+     * from every product. The products are not sharded, so their names and prices are resolved by the caller
+     */
+    private static final String SALES_QUERY = "SELECT clients.id AS clientId, `name`, itemorders.productId, SUM(itemorders.quantity) AS quantity" +
+            " FROM clients JOIN orders ON clients.id = orders.clientId JOIN itemorders ON itemorders.orderId = orders.id" +
+            " GROUP BY clients.id, `name`, itemorders.productId";
+
+    /**
+     * The column names used for order table, null until they are read for the first time
+     */
+    private volatile ArrayList<String> orderHelperColumns;
+
+    /**
+     * Method used for warming up the DAO, see {@link AbstractDAO#warmUp(boolean)}. The column names of the order
+     * report are preloaded as well
+     * @param preload True if the columns are read as well
+     */
+    @Override
+    public void warmUp(boolean preload) {
+        super.warmUp(preload);
+        if(preload) getOrderHelperColumns();
+    }
+
     /**
      * Method used for getting rows of type OrderHelper
-     * @return Returns an ArrayList of OrderHelper objects
+     * @return Returns an ArrayList of OrderHelper objects, or null if the rows could not be read
      */
     public ArrayList<OrderHelper> getOrderHelperRows() {
+        if(!isSharded()) return getOrderHelperRows(UNSHARDED, 0);
+        ArrayList<OrderHelper> orders = gather(DBConnection.scatter(shard -> getOrderHelperRows(shard, 0)));
+        if(orders == null || !resolveProductNames(orders)) return null;
+        orders.sort(Comparator.comparing(OrderHelper::getPrimaryKey));
+        return orders;
+    }
+
+    /**
+     * Method used for getting the rows of type OrderHelper with an item order id greater than the given ones, sorted by
+     * id. The item order ids grow on every shard independently, so an id is given for every shard
+     * @param afterIds The item order id after which the rows are read from every shard, or from the database at index
+     *                 0 if it is not sharded. The array has {@link #getShardSlots()} elements
+     * @return Returns an ArrayList of OrderHelper objects, or null if a shard could not be queried
+     */
+    public ArrayList<OrderHelper> getOrderHelperRowsAfter(int[] afterIds) {
+        ArrayList<OrderHelper> orders;
+        if(!isSharded()) {
+            orders = getOrderHelperRows(UNSHARDED, afterIds[0]);
+            if(orders == null) return null;
+        } else {
+            List<ArrayList<OrderHelper>> parts = DBConnection.scatter(shard -> getOrderHelperRows(shard, afterIds[shard]));
+            for(ArrayList<OrderHelper> part : parts) if(part == null) return null;
+            orders = gather(parts);
+            if(!resolveProductNames(orders)) return null;
+        }
+        orders.sort(Comparator.comparing(OrderHelper::getPrimaryKey));
+        return orders;
+    }
+
+    /**
+     * Method used for getting the number of ids needed by {@link #getOrderHelperRowsAfter(int[])}
+     * @return Returns the number of shards, or 1 if the database is not sharded
+     */
+    public int getShardSlots() {
+        return isSharded() ? DBConnection.getShardCount() : 1;
+    }
+
+    /**
+     * Method used for finding the index used by {@link #getOrderHelperRowsAfter(int[])} for an item order
+     * @param itemOrderId The id of the item order
+     * @return Returns the shard of the item order, or 0 if the database is not sharded
+     */
+    public int getShardSlot(int itemOrderId) {
+        return isSharded() ? DBConnection.shardOf(itemOrderId) : 0;
+    }
+
+    /**
+     * Method used for replacing the product ids held by the rows gathered from the shards with the product names
+     * @param orders The rows gathered from the shards
+     * @return Returns true if the products could be read
+     */
+    private boolean resolveProductNames(ArrayList<OrderHelper> orders) {
+        ArrayList<Product> products = new ProductDAO().findAll();
+        if(products == null) return false;
+        Map<Integer, String> productNames = new HashMap<>();
+        for(Product product : products) productNames.put(product.getPrimaryKey(), product.getProductName());
+        for(OrderHelper order : orders) order.setProductName(productNames.get(Integer.valueOf(order.getProductName())));
+        return true;
+    }
+
+    /**
+     * Method used for getting the rows of type OrderHelper stored in a shard, with an item order id greater than the
+     * given one. On a shard the product name of the rows holds the id of the product
+     * @param shard The index of the shard, or {@link #UNSHARDED}
+     * @param afterId The id of the last item order already read, 0 for all rows
+     * @return Returns an ArrayList of OrderHelper objects, or null if the rows could not be read
+     */
+    private ArrayList<OrderHelper> getOrderHelperRows(int shard, int afterId) {
         ArrayList<OrderHelper> orders = new ArrayList<>();
-        String query = "SELECT itemorders.id as id, `name`, productName, itemorders.quantity FROM clients JOIN orders ON clients.id = orders.clientId" +
-                " JOIN itemorders ON itemorders.orderId = orders.id JOIN products ON itemorders.productId = products.id";
-        Connection connection = DBConnection.getConnection();
-        Statement statement = null;
+        Connection connection = getConnection(shard, true);
+        PreparedStatement statement = null;
         ResultSet resultSet = null;
         try {
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery(query);
+            statement = connection.prepareStatement((shard == UNSHARDED ? ORDER_HELPER_QUERY : SHARD_ORDER_HELPER_QUERY) + " WHERE itemorders.id > ?");
+            statement.setInt(1, afterId);
+            resultSet = statement.executeQuery();
             while (resultSet.next()) {
                 OrderHelper orderHelper = new OrderHelper();
                 orderHelper.setPrimaryKey(resultSet.getInt("id"));
                 orderHelper.setClientName(resultSet.getString("name"));
-                orderHelper.setProductName(resultSet.getString("productName"));
+                orderHelper.setProductName(shard == UNSHARDED ? resultSet.getString("productName") : resultSet.getString("productId"));
                 orderHelper.setQuantity(resultSet.getInt("quantity"));
                 orders.add(orderHelper);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, "Unable to access the database", e);
+            orders = null;
         }
-        DBConnection.close(connection);
-        DBConnection.close(statement);
         DBConnection.close(resultSet);
+        DBConnection.close(statement);
+        DBConnection.close(connection);
         return orders;
     }
 
     /**
-     * Method used for getting the column names used for order table
+     * Method used for streaming the rows of the order report to a handler, in the order of the columns of
+     * {@link #getOrderHelperColumns()}, without building OrderHelper objects. In sharded mode the shards are streamed
+     * one after the other, so the rows are not sorted by id
+     * @param handler The handler receiving the rows
+     * @return Returns true if all rows were streamed
+     */
+    public boolean streamOrderHelperRows(RowHandler handler) {
+        if(!isSharded()) return stream(UNSHARDED, ORDER_HELPER_QUERY, handler);
+        ArrayList<Product> products = new ProductDAO().findAll();
+        if(products == null) return false;
+        Map<Object, String> productNames = new HashMap<>();
+        for(Product product : products) productNames.put(product.getPrimaryKey(), product.getProductName());
+        RowHandler resolver = values -> {
+            values[2] = productNames.get(values[2]);
+            handler.handle(values);
+        };
+        for(int shard = 0; shard < DBConnection.getShardCount(); shard++)
+            if(!stream(shard, SHARD_ORDER_HELPER_QUERY, resolver)) return false;
+        return true;
+    }
+
+    /**
+     * Method used for streaming the units bought by every client from every product, summed over the item orders, to a
+     * handler. The values of a row are the primary key and the name of the client, the primary key of the product and
+     * the units bought. In sharded mode the shards are streamed one after the other
+     * @param handler The handler receiving the rows
+     * @return Returns true if all rows were streamed
+     */
+    public boolean streamSalesRows(RowHandler handler) {
+        if(!isSharded()) return stream(UNSHARDED, SALES_QUERY, handler);
+        for(int shard = 0; shard < DBConnection.getShardCount(); shard++)
+            if(!stream(shard, SALES_QUERY, handler)) return false;
+        return true;
+    }
+
+    /**
+     * Method used for getting the column names used for order table. The columns are read once and then reused
      * @return Returns an ArrayList of Strings
      */
     public ArrayList<String> getOrderHelperColumns() {
-        String query = "SELECT itemorders.id as id, `name`, productName, itemorders.quantity FROM clients JOIN orders ON clients.id = orders.clientId" +
-                " JOIN itemorders ON itemorders.orderId = orders.id JOIN products ON itemorders.productId = products.id";
-        Connection connection = DBConnection.getConnection();
+        if(isSharded()) return new ArrayList<>(Arrays.asList("id", "name", "productName", "quantity"));
+        ArrayList<String> cached = orderHelperColumns;
+        if(cached != null) return new ArrayList<>(cached);
+        Connection connection = DBConnection.getReadConnection();
         Statement statement = null;
         ResultSet resultSet = null;
         try {
             statement = connection.createStatement();
-            resultSet = statement.executeQuery(query);
-            return getColumns(resultSet);
+            resultSet = statement.executeQuery(ORDER_HELPER_QUERY + " LIMIT 0");
+            orderHelperColumns = getColumns(resultSet);
+            return new ArrayList<>(orderHelperColumns);
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, "Unable to access the database", e);
         } finally {
-            DBConnection.close(connection);
-            DBConnection.close(statement);
             DBConnection.close(resultSet);
+            DBConnection.close(statement);
+            DBConnection.close(connection);
         }
         return null;
     }
@@ -1,7 +1,19 @@
 package dao;
-import model.Client;
+import dbaccess.DBConnection;
+import dbaccess.TableVersions;
 import model.Product;
 
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
 /**
  * The class represents an implementation of AbstractDAO class. It provides access to products table from the database.
  */
@@ -13,8 +25,9 @@ public class ProductDAO extends AbstractDAO<Product> {
      * @return Returns the product with the specified name
      */
     public Product findByProductName(String name) {
-        if(findByField("productName", name).size() == 0) return null;
-        return findByField("productName", name).get(0);
+        ArrayList<Product> products = findByField("productName", name);
+        if(products == null || products.size() == 0) return null;
+        return products.get(0);
     }
 
     /**
@@ -43,4 +56,90 @@ public class ProductDAO extends AbstractDAO<Product> {
         return product;
     }
 
+    /**
+     * Method used for changing the quantities of several products in a single batch per database, with
+     * "quantity = quantity + ?" updates, so the changes do not depend on the quantities read before. Outside a
+     * transaction every batch runs in a transaction of its own and is rolled back if it fails; inside the transaction
+     * of the current thread the update counts tell which changes were applied. The changes are relative, so the caller
+     * must retry only the changes which were not applied
+     * @param ids The primary keys of the products
+     * @param deltas The changes of the quantities, negative for the ordered quantities
+     * @param count The number of products
+     * @return Returns, for every product, true if its change was applied
+     */
+    public boolean[] addQuantities(int[] ids, int[] deltas, int count) {
+        Map<Integer, List<Integer>> byShard = new HashMap<>();
+        for(int i = 0; i < count; i++) byShard.computeIfAbsent(shardsFor("id", ids[i])[0], shard -> new ArrayList<>()).add(i);
+        boolean[] applied = new boolean[count];
+        boolean ownTransaction = !DBConnection.inTransaction();
+        for(Map.Entry<Integer, List<Integer>> entry : byShard.entrySet()) {
+            List<Integer> batch = entry.getValue();
+            Connection connection = getConnection(entry.getKey(), false);
+            if(connection == null) continue;
+            PreparedStatement statement = null;
+            try {
+                if(ownTransaction) connection.setAutoCommit(false);
+                statement = connection.prepareStatement("UPDATE products SET quantity = quantity + ? WHERE id = ?");
+                for(int i : batch) {
+                    statement.setInt(1, deltas[i]);
+                    statement.setInt(2, ids[i]);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                if(ownTransaction) connection.commit();
+                for(int i : batch) applied[i] = true;
+                TableVersions.bump("products");
+            } catch (BatchUpdateException e) {
+                LOGGER.log(Level.WARNING, "Unable to change the quantities of the products", e);
+                if(ownTransaction) rollback(connection);
+                else markApplied(batch, e.getUpdateCounts(), applied);
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Unable to access the database", e);
+                if(ownTransaction) rollback(connection);
+            } finally {
+                DBConnection.close(statement);
+                if(ownTransaction) restoreAutoCommit(connection);
+                DBConnection.close(connection);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Method used for marking the changes of a failed batch which were applied, from the update counts of the batch.
+     * The statements after the last update count were not executed
+     * @param batch The indexes of the changes of the batch, in batch order
+     * @param updateCounts The update counts of the batch
+     * @param applied Receives true for every applied change
+     */
+    private static void markApplied(List<Integer> batch, int[] updateCounts, boolean[] applied) {
+        if(updateCounts == null) return;
+        for(int i = 0; i < updateCounts.length && i < batch.size(); i++)
+            applied[batch.get(i)] = updateCounts[i] != Statement.EXECUTE_FAILED;
+    }
+
+    /**
+     * Method used for rolling back the transaction of a batch
+     * @param connection The connection of the batch
+     */
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to roll back the quantity changes", e);
+        }
+    }
+
+    /**
+     * Method used for giving a connection its auto commit back after the transaction of a batch
+     * @param connection The connection of the batch
+     */
+    private static void restoreAutoCommit(Connection connection) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to restore the auto commit of the connection", e);
+        }
+    }
+
 }
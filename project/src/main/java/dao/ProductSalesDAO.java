@@ -0,0 +1,10 @@
+package dao;
+
+import model.sales.ProductSales;
+
+/**
+ * The class represents an implementation of AbstractDAO class. This class provides access to productsales summary
+ * table from the database.
+ */
+public class ProductSalesDAO extends AbstractDAO<ProductSales> {
+}
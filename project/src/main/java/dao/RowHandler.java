@@ -0,0 +1,17 @@
+package dao;
+
+import java.io.IOException;
+
+/**
+ * This interface receives the rows streamed from a database cursor, one at a time, without building the model objects
+ */
+public interface RowHandler {
+
+    /**
+     * Method used for handling a row
+     * @param values The values of the row, in the order of the columns. The array is reused for the next row, so it
+     *               must not be kept
+     * @throws IOException If the row could not be written
+     */
+    void handle(Object[] values) throws IOException;
+}
@@ -0,0 +1,262 @@
+package dao;
+
+import dbaccess.DBConnection;
+import model.Index;
+import model.Table;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class verifies, at startup, that the tables with a definition and the indexes declared on the models exist in
+ * the database. Depending on the {@link Mode mode}, configured through the shopdb.schema system property, the
+ * application fails fast on a missing table or index (verify, the default) or creates it (create). Creating tables and
+ * indexes changes the schema, so it must be asked for
+ */
+public class SchemaManager {
+
+    /**
+     * The modes of the schema manager
+     */
+    public enum Mode {
+        /**
+         * Missing tables and indexes are created
+         */
+        CREATE,
+        /**
+         * Missing tables and indexes stop the application
+         */
+        VERIFY,
+        /**
+         * Tables and indexes are neither verified nor checked for the DAO queries
+         */
+        OFF
+    }
+
+    /**
+     * Logger object used for logging possible errors
+     */
+    private static final Logger LOGGER = Logger.getLogger(SchemaManager.class.getName());
+
+    /**
+     * The mode used
+     */
+    private static final Mode MODE = readMode();
+
+    /**
+     * The models whose tables are managed
+     */
+    private final Class<?>[] models;
+
+    /**
+     * The constructor initializes the managed models
+     * @param models The classes of the models, annotated with {@link Table}
+     */
+    public SchemaManager(Class<?>... models) {
+        this.models = models;
+    }
+
+    /**
+     * Method used for reading the mode from the shopdb.schema system property. An unknown mode is logged and replaced
+     * by {@link Mode#VERIFY}
+     * @return Returns the mode
+     */
+    private static Mode readMode() {
+        String mode = System.getProperty("shopdb.schema", "verify");
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Unknown schema mode " + mode + ", the indexes are verified");
+            return Mode.VERIFY;
+        }
+    }
+
+    /**
+     * Method used for checking if the DAO queries by fields not indexed are logged
+     * @return Returns true unless the mode is {@link Mode#OFF}
+     */
+    public static boolean isEnforced() {
+        return MODE != Mode.OFF;
+    }
+
+    /**
+     * Method used for verifying, and creating if needed, the tables and the indexes of all models on every database
+     * storing them
+     * @throws IllegalStateException If a table or an index is missing and the mode is {@link Mode#VERIFY}, or it could
+     * not be created
+     */
+    public void apply() {
+        if(MODE == Mode.OFF) return;
+        for(Class<?> model : models) {
+            Table table = model.getAnnotation(Table.class);
+            if(DBConnection.getShardCount() > 0 && !table.shardKey().isEmpty()) {
+                for(int shard = 0; shard < DBConnection.getShardCount(); shard++) apply(table, DBConnection.getShardConnection(shard));
+            } else {
+                apply(table, DBConnection.getConnection());
+            }
+        }
+    }
+
+    /**
+     * Method used for verifying, and creating if needed, the table and the indexes of a table on one database
+     * @param table The table annotation of the model
+     * @param connection The connection to the database, closed at the end
+     */
+    private void apply(Table table, Connection connection) {
+        if(connection == null) throw new IllegalStateException("Unable to access the database for verifying the schema");
+        try {
+            if(!table.definition().isEmpty() && !tableExists(connection.getMetaData(), connection.getCatalog(), table.tableName())) {
+                if(MODE == Mode.VERIFY)
+                    throw new IllegalStateException("The table " + table.tableName() + " is missing");
+                createTable(connection, table);
+            }
+            Map<String, IndexInfo> existing = getIndexes(connection.getMetaData(), connection.getCatalog(), table.tableName());
+            for(Index index : table.indexes()) {
+                if(isCovered(index, existing)) continue;
+                String name = getName(table, index);
+                if(MODE == Mode.VERIFY)
+                    throw new IllegalStateException("The index " + name + " is missing from the table " + table.tableName());
+                createIndex(connection, table, index, name);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to verify the schema of the table " + table.tableName(), e);
+        } finally {
+            DBConnection.close(connection);
+        }
+    }
+
+    /**
+     * Method used for checking if a table exists
+     * @param metaData The meta data of the database
+     * @param catalog The catalog of the database
+     * @param tableName The name of the table
+     * @return Returns true if the table exists
+     * @throws SQLException If there was a problem in database connection
+     */
+    private boolean tableExists(DatabaseMetaData metaData, String catalog, String tableName) throws SQLException {
+        ResultSet resultSet = metaData.getTables(catalog, null, tableName, null);
+        try {
+            return resultSet.next();
+        } finally {
+            DBConnection.close(resultSet);
+        }
+    }
+
+    /**
+     * Method used for creating a missing table from its definition
+     * @param connection The connection to the database
+     * @param table The table annotation of the model
+     * @throws SQLException If the table could not be created
+     */
+    private void createTable(Connection connection, Table table) throws SQLException {
+        Statement statement = null;
+        try {
+            statement = connection.createStatement();
+            statement.executeUpdate("CREATE TABLE " + table.tableName() + " (" + table.definition() + ")");
+            LOGGER.log(Level.INFO, "Created the table " + table.tableName());
+        } finally {
+            DBConnection.close(statement);
+        }
+    }
+
+    /**
+     * Method used for reading the existing indexes of a table
+     * @param metaData The meta data of the database
+     * @param catalog The catalog of the database
+     * @param tableName The name of the table
+     * @return Returns the indexes by name, with the columns in index order
+     * @throws SQLException If there was a problem in database connection
+     */
+    private Map<String, IndexInfo> getIndexes(DatabaseMetaData metaData, String catalog, String tableName) throws SQLException {
+        Map<String, IndexInfo> indexes = new HashMap<>();
+        ResultSet resultSet = metaData.getIndexInfo(catalog, null, tableName, false, true);
+        try {
+            while(resultSet.next()) {
+                String name = resultSet.getString("INDEX_NAME");
+                if(name == null) continue;
+                IndexInfo info = indexes.computeIfAbsent(name, key -> new IndexInfo());
+                info.unique = info.unique || !resultSet.getBoolean("NON_UNIQUE");
+                int position = resultSet.getShort("ORDINAL_POSITION");
+                while(info.columns.size() < position) info.columns.add(null);
+                info.columns.set(position - 1, resultSet.getString("COLUMN_NAME"));
+            }
+        } finally {
+            DBConnection.close(resultSet);
+        }
+        return indexes;
+    }
+
+    /**
+     * Method used for checking if a declared index is covered by an existing one, which starts with the same columns
+     * and is unique if the declared index is unique
+     * @param index The declared index
+     * @param existing The existing indexes of the table
+     * @return Returns true if the declared index exists
+     */
+    private boolean isCovered(Index index, Map<String, IndexInfo> existing) {
+        for(IndexInfo info : existing.values()) {
+            if(index.unique() && (!info.unique || info.columns.size() != index.columns().length)) continue;
+            if(info.columns.size() < index.columns().length) continue;
+            boolean matches = true;
+            for(int i = 0; i < index.columns().length && matches; i++)
+                matches = index.columns()[i].equalsIgnoreCase(info.columns.get(i));
+            if(matches) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method used for creating a missing index
+     * @param connection The connection to the database
+     * @param table The table annotation of the model
+     * @param index The declared index
+     * @param name The name of the index
+     * @throws SQLException If the index could not be created
+     */
+    private void createIndex(Connection connection, Table table, Index index, String name) throws SQLException {
+        String query = "CREATE " + (index.unique() ? "UNIQUE " : "") + "INDEX " + name + " ON " + table.tableName() +
+                " (" + String.join(", ", index.columns()) + ")";
+        Statement statement = null;
+        try {
+            statement = connection.createStatement();
+            statement.executeUpdate(query);
+            LOGGER.log(Level.INFO, "Created the index " + name + " on the table " + table.tableName());
+        } finally {
+            DBConnection.close(statement);
+        }
+    }
+
+    /**
+     * Method used for getting the name of a declared index
+     * @param table The table annotation of the model
+     * @param index The declared index
+     * @return Returns the declared name, or a name generated from the table and the columns
+     */
+    private static String getName(Table table, Index index) {
+        if(!index.name().isEmpty()) return index.name();
+        return "idx_" + table.tableName() + "_" + String.join("_", index.columns());
+    }
+
+    /**
+     * The columns and the uniqueness of an existing index
+     */
+    private static class IndexInfo {
+        /**
+         * The columns of the index, in index order
+         */
+        private final List<String> columns = new ArrayList<>();
+        /**
+         * True if the index is unique
+         */
+        private boolean unique;
+    }
+}
@@ -0,0 +1,190 @@
+package dbaccess;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class represents a pool of connections to a single database. Released connections are kept idle and handed out
+ * again instead of opening a new connection for every query
+ */
+public class ConnectionPool {
+    /**
+     * Logger object used for logging possible errors
+     */
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+    /**
+     * The time, in milliseconds, after which an idle connection is validated before being handed out again
+     */
+    private static final long VALIDATION_INTERVAL = 30000L;
+    /**
+     * The url which points to the database of this pool
+     */
+    private final String url;
+    /**
+     * The username of the database
+     */
+    private final String user;
+    /**
+     * The password of the database user
+     */
+    private final String password;
+    /**
+     * The statement executed on every newly created connection, or null if there is none
+     */
+    private final String initStatement;
+    /**
+     * The maximum number of idle connections kept by the pool
+     */
+    private final int maxIdle;
+    /**
+     * The idle connections, the most recently released first
+     */
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    /**
+     * The number of idle connections
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * The constructor initializes the pool without opening any connection
+     * @param url The url of the database
+     * @param user The username of the database
+     * @param password The password of the database user
+     * @param initStatement The statement executed on every new connection, may be null
+     * @param maxIdle The maximum number of idle connections kept by the pool
+     */
+    public ConnectionPool(String url, String user, String password, String initStatement, int maxIdle) {
+        LOGGER.setLevel(Level.WARNING);
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.initStatement = initStatement;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Method used for getting a connection from the pool. If there is no usable idle connection a new one is created
+     * @return Returns the connection. If the database is not accessible returns null
+     */
+    public Connection acquire() {
+        IdleConnection candidate;
+        while((candidate = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            if(isUsable(candidate)) return candidate.connection;
+            closeQuietly(candidate.connection);
+        }
+        return createConnection();
+    }
+
+    /**
+     * Method used for giving a connection back to the pool. The connection is closed if the pool is full
+     * @param connection The connection to be released
+     */
+    public void release(Connection connection) {
+        if(connection == null) return;
+        try {
+            if(connection.isClosed()) return;
+            if(!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to reset the connection", e);
+            closeQuietly(connection);
+            return;
+        }
+        if(idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            closeQuietly(connection);
+            return;
+        }
+        idle.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+    }
+
+    /**
+     * Method used for closing all idle connections of the pool
+     */
+    public void closeAll() {
+        IdleConnection candidate;
+        while((candidate = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            closeQuietly(candidate.connection);
+        }
+    }
+
+    /**
+     * Method used for checking if an idle connection can be handed out again
+     * @param candidate The idle connection to be checked
+     * @return Returns true if the connection is still open and valid
+     */
+    private boolean isUsable(IdleConnection candidate) {
+        try {
+            if(candidate.connection.isClosed()) return false;
+            return System.currentTimeMillis() - candidate.since < VALIDATION_INTERVAL || candidate.connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method used for creating a new connection and running the {@link #initStatement init statement} on it
+     * @return Returns the created connection. If the database is not accessible returns null
+     */
+    private Connection createConnection() {
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection(url, user, password);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to access the database", e);
+            return null;
+        }
+        if(initStatement == null) return connection;
+        Statement statement = null;
+        try {
+            statement = connection.createStatement();
+            statement.execute(initStatement);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to initialize the connection", e);
+        } finally {
+            DBConnection.close(statement);
+        }
+        return connection;
+    }
+
+    /**
+     * Method used for closing a connection ignoring the possible errors
+     * @param connection The connection to be closed
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to access the database and close the connection", e);
+        }
+    }
+
+    /**
+     * An idle connection together with the moment it was released
+     */
+    private static class IdleConnection {
+        /**
+         * The idle connection
+         */
+        private final Connection connection;
+        /**
+         * The moment the connection was released
+         */
+        private final long since;
+
+        private IdleConnection(Connection connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+}
@@ -1,12 +1,26 @@
 package dbaccess;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Database Connection class provides access to a database. The class contains private fields, used for loading the
- * database, and methods for getting and closing database connections
+ * database, and methods for getting and closing database connections. Read only queries can be routed to a read
+ * replica, configured through the shopdb.replica.url system property, and the clients, orders and item orders can be
+ * split across several shards, configured through the shopdb.shards system property. Every database has its own
+ * connection pool
  */
 public class DBConnection {
     /**
@@ -29,13 +43,101 @@ public class DBConnection {
      * The password of the database user
      */
     private static final String PASSWORD = "root";
+    /**
+     * The url which points to a read replica of the database. If it is not configured all reads use {@link #DB_URL}
+     */
+    private static final String REPLICA_URL = System.getProperty("shopdb.replica.url");
+    /**
+     * The username of the read replica
+     */
+    private static final String REPLICA_USER = System.getProperty("shopdb.replica.user", USER);
+    /**
+     * The password of the read replica user
+     */
+    private static final String REPLICA_PASSWORD = System.getProperty("shopdb.replica.password", PASSWORD);
+    /**
+     * True if the current command, or the current thread outside a command, wrote to the primary database
+     */
+    private static final ThreadLocal<Boolean> commandWrite = new ThreadLocal<>();
+    /**
+     * True if an earlier command of the current thread wrote to the primary database and the replication position of
+     * the write was not taken yet
+     */
+    private static final ThreadLocal<Boolean> earlierWrite = new ThreadLocal<>();
+    /**
+     * True while the current thread executes a command, see {@link #beginCommand()}
+     */
+    private static final ThreadLocal<Boolean> inCommand = new ThreadLocal<>();
+    /**
+     * The GTID set of the primary database after the last write of the current thread which the replica has not been
+     * seen to apply yet, null if there is none
+     */
+    private static final ThreadLocal<String> writePosition = new ThreadLocal<>();
+    /**
+     * The position of a write whose GTID set could not be read, such as when GTIDs are disabled. The reads which
+     * follow such a write always use the primary database
+     */
+    private static final String UNKNOWN_POSITION = new String("");
+    /**
+     * The connections of the transaction of the current thread, by pool. Null if the thread has no transaction
+     */
+    private static final ThreadLocal<Map<ConnectionPool, Connection>> transaction = new ThreadLocal<>();
+    /**
+     * The actions to be run when the transaction of the current thread ends
+     */
+    private static final ThreadLocal<List<Consumer<Boolean>>> afterTransaction = new ThreadLocal<>();
+    /**
+     * The urls of the shards, separated by commas. If it is not configured the sharded tables are stored in the primary
+     * database. Every shard i receives the session settings auto_increment_increment = number of shards and
+     * auto_increment_offset = i + 1, so the generated ids are unique across shards and the id identifies the shard
+     */
+    private static final String SHARD_URLS = System.getProperty("shopdb.shards");
+    /**
+     * The username of the shards
+     */
+    private static final String SHARD_USER = System.getProperty("shopdb.shards.user", USER);
+    /**
+     * The password of the shards user
+     */
+    private static final String SHARD_PASSWORD = System.getProperty("shopdb.shards.password", PASSWORD);
+    /**
+     * The maximum number of idle connections kept by every pool
+     */
+    private static final int MAX_IDLE = Integer.getInteger("shopdb.pool.maxIdle", 8);
+    /**
+     * True if the statements are timed and recorded in {@link StatementStatistics}. Recording wraps every connection,
+     * statement and result set in a proxy, so it is off unless the shopdb.stats system property is true
+     */
+    private static final boolean STATISTICS = Boolean.getBoolean("shopdb.stats");
     /**
      * The single object of this class
      */
     private static final DBConnection dbConnection = new DBConnection();
 
     /**
-     * The constructor set the {@link #LOGGER logger} level to WARNING and tries to instantiate the driver
+     * The pool of connections to the primary database
+     */
+    private ConnectionPool primaryPool;
+    /**
+     * The pool of connections to the read replica, null if no replica is configured
+     */
+    private ConnectionPool replicaPool;
+    /**
+     * The pools of connections to the shards, empty if no shards are configured
+     */
+    private final List<ConnectionPool> shardPools = new ArrayList<>();
+    /**
+     * The pool and the unwrapped connection of every connection handed out and not closed yet
+     */
+    private final Map<Connection, Lease> leases = new ConcurrentHashMap<>();
+    /**
+     * The executor used for querying the shards in parallel, null if no shards are configured
+     */
+    private ExecutorService shardExecutor;
+
+    /**
+     * The constructor set the {@link #LOGGER logger} level to WARNING, tries to instantiate the driver and creates the
+     * connection pools
      */
     private DBConnection() {
         LOGGER.setLevel(Level.WARNING);
@@ -48,35 +150,348 @@ public class DBConnection {
         } catch (ClassNotFoundException e) {
             LOGGER.log(Level.WARNING, "Unable to load driver class", e);
         }
+        primaryPool = new ConnectionPool(DB_URL, USER, PASSWORD, null, MAX_IDLE);
+        if(REPLICA_URL != null) replicaPool = new ConnectionPool(REPLICA_URL, REPLICA_USER, REPLICA_PASSWORD, null, MAX_IDLE);
+        if(SHARD_URLS != null) {
+            String[] urls = SHARD_URLS.split(",");
+            for(int i = 0; i < urls.length; i++) {
+                String init = "SET SESSION auto_increment_increment = " + urls.length + ", auto_increment_offset = " + (i + 1);
+                shardPools.add(new ConnectionPool(urls[i].trim(), SHARD_USER, SHARD_PASSWORD, init, MAX_IDLE));
+            }
+            shardExecutor = Executors.newFixedThreadPool(urls.length, runnable -> {
+                Thread thread = new Thread(runnable, "shard-query");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     /**
-     * Private method which tries to create and return a connection to the database
-     * @return Return the created connection. If the database is not accessible returns null
+     * Private method which takes a connection from the given pool and remembers its pool until it is closed. If the
+     * statistics are enabled the connection is wrapped by a {@link StatementInterceptor}
+     * @param pool The pool used
+     * @return Return the connection. If the database is not accessible returns null
+     */
+    private Connection lease(ConnectionPool pool) {
+        Map<ConnectionPool, Connection> bound = transaction.get();
+        Connection connection = bound == null ? pool.acquire() : bound.get(pool);
+        if(connection == null && bound != null) connection = bind(pool, bound);
+        if(connection == null) return null;
+        Connection leased = STATISTICS ? StatementInterceptor.wrap(connection) : connection;
+        leases.put(leased, new Lease(bound == null ? pool : null, connection));
+        return leased;
+    }
+
+    /**
+     * Private method which takes a connection from the given pool and binds it to the transaction of the current thread
+     * @param pool The pool used
+     * @param bound The connections of the transaction
+     * @return Return the connection. If the database is not accessible returns null
      */
-    private Connection createConnection() {
+    private Connection bind(ConnectionPool pool, Map<ConnectionPool, Connection> bound) {
+        Connection connection = pool.acquire();
+        if(connection == null) return null;
         try {
-            return DriverManager.getConnection(DB_URL, USER, PASSWORD);
+            connection.setAutoCommit(false);
         } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Unable to access the database", e);
+            LOGGER.log(Level.WARNING, "Unable to start the transaction", e);
         }
-        return null;
+        bound.put(pool, connection);
+        return connection;
     }
 
     /**
-     * Method used for getting a connection to the database
+     * Method used for getting a connection to the primary database. It must be used for every write, because it also
+     * marks the current thread as a writer, so its next reads see the write, see {@link #getReadConnection()}
      * @return Return the created connection. If the database is not accessible returns null
      */
     public static Connection getConnection() {
-        return dbConnection.createConnection();
+        commandWrite.set(Boolean.TRUE);
+        return dbConnection.lease(dbConnection.primaryPool);
+    }
+
+    /**
+     * Method used for getting a connection for read only queries. The connection points to the primary database if no
+     * replica is configured, inside a transaction, and after a write made by the current command. Otherwise, if the
+     * current thread wrote before, the replica is used only once it has applied the GTID set the primary had after the
+     * write, so a thread always sees its own writes however far the replica lags behind. The replica must have GTIDs
+     * enabled; without them the reads following a write stay on the primary
+     * @return Return the created connection. If the database is not accessible returns null
+     */
+    public static Connection getReadConnection() {
+        if(dbConnection.replicaPool == null || inTransaction()) return dbConnection.lease(dbConnection.primaryPool);
+        if(commandWrite.get() != null) {
+            if(inCommand.get() != null) return dbConnection.lease(dbConnection.primaryPool);
+            commandWrite.remove();
+            earlierWrite.set(Boolean.TRUE);
+        }
+        if(earlierWrite.get() != null) {
+            earlierWrite.remove();
+            writePosition.set(readPrimaryPosition());
+        }
+        String position = writePosition.get();
+        if(position == UNKNOWN_POSITION) return dbConnection.lease(dbConnection.primaryPool);
+        Connection connection = dbConnection.lease(dbConnection.replicaPool);
+        if(position == null || connection == null) return connection;
+        if(hasApplied(connection, position)) {
+            writePosition.remove();
+            return connection;
+        }
+        close(connection);
+        return dbConnection.lease(dbConnection.primaryPool);
+    }
+
+    /**
+     * Method used for marking the start of a command on the current thread. Until {@link #endCommand()} the reads
+     * following a write of the command use the primary database without comparing replication positions
+     */
+    public static void beginCommand() {
+        inCommand.set(Boolean.TRUE);
+        if(commandWrite.get() == null) return;
+        commandWrite.remove();
+        earlierWrite.set(Boolean.TRUE);
+    }
+
+    /**
+     * Method used for marking the end of the command of the current thread
+     */
+    public static void endCommand() {
+        inCommand.remove();
     }
 
     /**
-     * Method used for closing a connection
+     * Private method which reads the GTID set executed by the primary database
+     * @return Returns the GTID set, or {@link #UNKNOWN_POSITION} if it could not be read or GTIDs are disabled
+     */
+    private static String readPrimaryPosition() {
+        Connection connection = dbConnection.lease(dbConnection.primaryPool);
+        if(connection == null) return UNKNOWN_POSITION;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery("SELECT @@GLOBAL.gtid_executed");
+            String position = resultSet.next() ? resultSet.getString(1) : null;
+            return position == null || position.isEmpty() ? UNKNOWN_POSITION : position;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the replication position of the primary database", e);
+            return UNKNOWN_POSITION;
+        } finally {
+            close(resultSet);
+            close(statement);
+            close(connection);
+        }
+    }
+
+    /**
+     * Private method which checks if the replica has applied a GTID set of the primary database
+     * @param connection The connection to the replica
+     * @param position The GTID set
+     * @return Returns true if the replica has applied every transaction of the set
+     */
+    private static boolean hasApplied(Connection connection, String position) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement("SELECT GTID_SUBSET(?, @@GLOBAL.gtid_executed)");
+            statement.setString(1, position);
+            resultSet = statement.executeQuery();
+            return resultSet.next() && resultSet.getInt(1) == 1;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the replication position of the replica", e);
+            return false;
+        } finally {
+            close(resultSet);
+            close(statement);
+        }
+    }
+
+    /**
+     * Method used for starting a transaction on the current thread. Until it is committed or rolled back, every
+     * connection obtained by the thread from a pool is the same connection of the transaction, with auto commit
+     * disabled. A transaction spanning several shards is committed on each shard in turn, not atomically
+     * @throws IllegalStateException If the thread already has a transaction
+     */
+    public static void beginTransaction() {
+        if(inTransaction()) throw new IllegalStateException("The current thread already has a transaction");
+        transaction.set(new HashMap<>());
+    }
+
+    /**
+     * Method used for committing the transaction of the current thread
+     * @throws SQLException If the transaction could not be committed. The transaction is rolled back in that case
+     */
+    public static void commitTransaction() throws SQLException {
+        Map<ConnectionPool, Connection> bound = transaction.get();
+        if(bound == null) return;
+        try {
+            for(Connection connection : bound.values()) connection.commit();
+        } catch (SQLException e) {
+            rollbackTransaction();
+            throw e;
+        }
+        endTransaction(bound, true);
+    }
+
+    /**
+     * Method used for rolling back the transaction of the current thread
+     */
+    public static void rollbackTransaction() {
+        Map<ConnectionPool, Connection> bound = transaction.get();
+        if(bound == null) return;
+        for(Connection connection : bound.values()) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Unable to roll back the transaction", e);
+            }
+        }
+        endTransaction(bound, false);
+    }
+
+    /**
+     * Private method which gives the connections of a finished transaction back to their pools and runs the actions
+     * registered with {@link #afterTransaction(Consumer)}
+     * @param bound The connections of the transaction
+     * @param committed True if the transaction was committed, false if it was rolled back
+     */
+    private static void endTransaction(Map<ConnectionPool, Connection> bound, boolean committed) {
+        transaction.remove();
+        TableVersions.endTransaction();
+        for(Map.Entry<ConnectionPool, Connection> entry : bound.entrySet()) entry.getKey().release(entry.getValue());
+        List<Consumer<Boolean>> actions = afterTransaction.get();
+        if(actions == null) return;
+        afterTransaction.remove();
+        for(Consumer<Boolean> action : actions) action.accept(committed);
+    }
+
+    /**
+     * Method used for registering an action to be run when the transaction of the current thread ends, such as
+     * keeping or undoing an in-memory change made with the transaction. Without a transaction every statement is
+     * committed at once, so the action is run immediately
+     * @param action The action, given true if the transaction was committed and false if it was rolled back
+     */
+    public static void afterTransaction(Consumer<Boolean> action) {
+        if(!inTransaction()) {
+            action.accept(true);
+            return;
+        }
+        List<Consumer<Boolean>> actions = afterTransaction.get();
+        if(actions == null) {
+            actions = new ArrayList<>();
+            afterTransaction.set(actions);
+        }
+        actions.add(action);
+    }
+
+    /**
+     * Method used for checking if the current thread has a transaction
+     * @return Returns true if the current thread has a transaction
+     */
+    public static boolean inTransaction() {
+        return transaction.get() != null;
+    }
+
+    /**
+     * Method used for checking if the statements are recorded in {@link StatementStatistics}
+     * @return Returns true if the statistics are enabled
+     */
+    public static boolean isStatisticsEnabled() {
+        return STATISTICS;
+    }
+
+    /**
+     * Method used for getting the number of configured shards
+     * @return Returns the number of shards, 0 if the database is not sharded
+     */
+    public static int getShardCount() {
+        return dbConnection.shardPools.size();
+    }
+
+    /**
+     * Method used for getting a connection to a shard
+     * @param shard The index of the shard
+     * @return Return the created connection. If the database is not accessible returns null
+     */
+    public static Connection getShardConnection(int shard) {
+        return dbConnection.lease(dbConnection.shardPools.get(shard));
+    }
+
+    /**
+     * Method used for finding the shard which stores a row. Ids are mapped using the auto increment offset of the
+     * shards, any other value (for example the name of a client) is mapped by its hash
+     * @param key The id or the value used for sharding
+     * @return Returns the index of the shard
+     */
+    public static int shardOf(Object key) {
+        int count = getShardCount();
+        if(key instanceof Integer) return Math.floorMod((Integer) key - 1, count);
+        return Math.floorMod(key.hashCode(), count);
+    }
+
+    /**
+     * Method used for running a query on every shard in parallel and gathering the results. Inside a transaction the
+     * shards are queried one by one on the current thread, so the query sees the uncommitted writes
+     * @param query The query to be run, receiving the index of the shard
+     * @param <R> The type of the result of a single shard
+     * @return Returns the results, in the order of the shards
+     */
+    public static <R> List<R> scatter(IntFunction<R> query) {
+        if(inTransaction()) {
+            List<R> results = new ArrayList<>();
+            for(int shard = 0; shard < getShardCount(); shard++) results.add(query.apply(shard));
+            return results;
+        }
+        List<Future<R>> futures = new ArrayList<>();
+        for(int shard = 0; shard < getShardCount(); shard++) {
+            final int index = shard;
+            futures.add(dbConnection.shardExecutor.submit(() -> query.apply(index)));
+        }
+        List<R> results = new ArrayList<>();
+        for(Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(null);
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "Unable to query a shard", e.getCause());
+                results.add(null);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Method used for opening connections ahead of time, so that the first queries do not pay for them. The connections
+     * are opened on every pool and kept idle
+     * @param count The number of connections opened on every pool
+     */
+    public static void warmUp(int count) {
+        List<ConnectionPool> pools = new ArrayList<>(dbConnection.shardPools);
+        pools.add(dbConnection.primaryPool);
+        if(dbConnection.replicaPool != null) pools.add(dbConnection.replicaPool);
+        for(ConnectionPool pool : pools) {
+            List<Connection> opened = new ArrayList<>();
+            for(int i = 0; i < count; i++) {
+                Connection connection = pool.acquire();
+                if(connection != null) opened.add(connection);
+            }
+            for(Connection connection : opened) pool.release(connection);
+        }
+    }
+
+    /**
+     * Method used for closing a connection. Connections obtained from this class are given back to their pool
      * @param connection The connection to be closed
      */
     public static void close(Connection connection) {
         if(connection == null) return;
+        Lease lease = dbConnection.leases.remove(connection);
+        if(lease != null) {
+            if(lease.pool != null) lease.pool.release(lease.connection);
+            return;
+        }
         try {
             connection.close();
         } catch (SQLException e) {
@@ -110,4 +525,23 @@ public class DBConnection {
         }
     }
 
+    /**
+     * A connection handed out by a pool
+     */
+    private static class Lease {
+        /**
+         * The pool which handed out the connection, null if the connection belongs to a transaction
+         */
+        private final ConnectionPool pool;
+        /**
+         * The connection, as created by the pool
+         */
+        private final Connection connection;
+
+        private Lease(ConnectionPool pool, Connection connection) {
+            this.pool = pool;
+            this.connection = connection;
+        }
+    }
+
 }
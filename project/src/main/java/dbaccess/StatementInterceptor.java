@@ -0,0 +1,204 @@
+package dbaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class wraps JDBC connections so that every statement executed through them is timed and recorded in
+ * {@link StatementStatistics}. Statements slower than the threshold configured through the shopdb.slowQuery.ms system
+ * property are logged together with their EXPLAIN output
+ */
+public class StatementInterceptor implements InvocationHandler {
+
+    /**
+     * Logger object used for logging the slow statements
+     */
+    private static final Logger LOGGER = Logger.getLogger(StatementInterceptor.class.getName());
+    /**
+     * The duration, in milliseconds, above which a statement is considered slow
+     */
+    private static final long SLOW_QUERY_MILLIS = Long.getLong("shopdb.slowQuery.ms", 200L);
+    /**
+     * The wrapped object: a connection, a statement or a result set
+     */
+    private final Object target;
+    /**
+     * The connection which created the wrapped object, used for running EXPLAIN
+     */
+    private final Connection connection;
+    /**
+     * The SQL of a prepared statement, null for the other objects
+     */
+    private final String sql;
+    /**
+     * The parameters set on a prepared statement, by index
+     */
+    private final Map<Integer, Object> parameters = new TreeMap<>();
+    /**
+     * The normalized SQL of the query which produced a result set
+     */
+    private final String resultSql;
+    /**
+     * The number of rows read from a result set
+     */
+    private long rows;
+    /**
+     * True if the rows of a result set were already recorded
+     */
+    private boolean recorded;
+
+    private StatementInterceptor(Object target, Connection connection, String sql, String resultSql) {
+        this.target = target;
+        this.connection = connection;
+        this.sql = sql;
+        this.resultSql = resultSql;
+    }
+
+    /**
+     * Method used for wrapping a connection
+     * @param connection The connection to be wrapped
+     * @return Returns the wrapped connection
+     */
+    public static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new StatementInterceptor(connection, connection, null, null));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if(name.equals("equals")) return proxy == args[0];
+        if(name.equals("hashCode")) return System.identityHashCode(proxy);
+        if(target instanceof Connection) return invokeOnConnection(method, args);
+        if(target instanceof ResultSet) return invokeOnResultSet(method, args);
+        return invokeOnStatement(method, args);
+    }
+
+    /**
+     * Method used for wrapping the statements created by the connection
+     */
+    private Object invokeOnConnection(Method method, Object[] args) throws Throwable {
+        Object result = call(method, args);
+        if(method.getName().equals("prepareStatement"))
+            return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    new StatementInterceptor(result, connection, (String) args[0], null));
+        if(method.getName().equals("createStatement"))
+            return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                    new StatementInterceptor(result, connection, null, null));
+        return result;
+    }
+
+    /**
+     * Method used for recording the parameters and timing the executions of a statement
+     */
+    private Object invokeOnStatement(Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+            parameters.put((Integer) args[0], args[1]);
+            return call(method, args);
+        }
+        if(!name.startsWith("execute")) return call(method, args);
+        boolean prepared = args == null || args.length == 0 || !(args[0] instanceof String);
+        String executed = prepared ? sql : (String) args[0];
+        if(executed == null) return call(method, args);
+        String normalizedSql = StatementStatistics.normalize(executed);
+        long start = System.nanoTime();
+        Object result = call(method, args);
+        long elapsed = System.nanoTime() - start;
+        StatementStatistics.record(normalizedSql, elapsed, result instanceof Integer ? (Integer) result : 0);
+        if(elapsed > SLOW_QUERY_MILLIS * 1000000L) logSlow(executed, elapsed, prepared);
+        if(result instanceof ResultSet)
+            return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    new StatementInterceptor(result, connection, null, normalizedSql));
+        return result;
+    }
+
+    /**
+     * Method used for counting the rows read from a result set
+     */
+    private Object invokeOnResultSet(Method method, Object[] args) throws Throwable {
+        Object result = call(method, args);
+        if(method.getName().equals("next")) {
+            if(Boolean.TRUE.equals(result)) rows++;
+            else recordRows();
+        } else if(method.getName().equals("close")) {
+            recordRows();
+        }
+        return result;
+    }
+
+    /**
+     * Method used for adding the rows read from a result set to the statistics of its query, only once
+     */
+    private void recordRows() {
+        if(recorded) return;
+        recorded = true;
+        StatementStatistics.addRows(resultSql, rows);
+    }
+
+    /**
+     * Method used for logging a slow statement together with its EXPLAIN output
+     * @param executed The executed statement
+     * @param nanos The duration of the execution, in nanoseconds
+     * @param prepared True if the statement has the recorded parameters
+     */
+    private void logSlow(String executed, long nanos, boolean prepared) {
+        StringBuilder message = new StringBuilder();
+        message.append(String.format("Slow statement (%.3f ms): %s", nanos / 1e6, executed));
+        if(prepared && !parameters.isEmpty()) message.append(" with parameters ").append(parameters.values());
+        message.append('\n').append(explain(executed, prepared));
+        LOGGER.log(Level.WARNING, message.toString());
+    }
+
+    /**
+     * Method used for running EXPLAIN on a statement
+     * @param executed The explained statement
+     * @param prepared True if the recorded parameters must be bound
+     * @return Returns the EXPLAIN output as text, one row per line
+     */
+    private String explain(String executed, boolean prepared) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement("EXPLAIN " + executed);
+            if(prepared) for(Map.Entry<Integer, Object> parameter : parameters.entrySet())
+                statement.setObject(parameter.getKey(), parameter.getValue());
+            resultSet = statement.executeQuery();
+            StringBuilder plan = new StringBuilder("EXPLAIN:");
+            int columns = resultSet.getMetaData().getColumnCount();
+            while(resultSet.next()) {
+                plan.append('\n');
+                for(int i = 1; i <= columns; i++)
+                    plan.append(resultSet.getMetaData().getColumnLabel(i)).append('=').append(resultSet.getObject(i)).append(' ');
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            return "EXPLAIN unavailable: " + e.getMessage();
+        } finally {
+            DBConnection.close(resultSet);
+            DBConnection.close(statement);
+        }
+    }
+
+    /**
+     * Method used for calling a method on the wrapped object, throwing the original exception
+     */
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
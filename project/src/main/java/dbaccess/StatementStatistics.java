@@ -0,0 +1,188 @@
+package dbaccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * This class collects the statistics of the executed SQL statements, grouped by the normalized statement: the number of
+ * executions, the latency percentiles and the number of rows returned or changed
+ */
+public class StatementStatistics {
+
+    /**
+     * The maximum number of latency samples kept for a statement
+     */
+    private static final int MAX_SAMPLES = 1024;
+    /**
+     * The maximum number of distinct statements whose normalized form is cached
+     */
+    private static final int MAX_CACHED = 4096;
+    /**
+     * Pattern matching the string literals of a statement
+     */
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.)*'");
+    /**
+     * Pattern matching the numeric literals of a statement
+     */
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    /**
+     * Pattern matching consecutive whitespaces
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    /**
+     * The statistics of every normalized statement
+     */
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * The normalized form of the already seen statements
+     */
+    private static final Map<String, String> normalized = new ConcurrentHashMap<>();
+
+    private StatementStatistics() {
+    }
+
+    /**
+     * Method used for normalizing a statement: the literals are replaced by ? and the whitespaces are collapsed, so the
+     * executions of the same statement with different values are grouped together
+     * @param sql The statement to be normalized
+     * @return Returns the normalized statement
+     */
+    public static String normalize(String sql) {
+        String result = normalized.get(sql);
+        if(result != null) return result;
+        result = STRING_LITERAL.matcher(sql).replaceAll("?");
+        result = NUMERIC_LITERAL.matcher(result).replaceAll("?");
+        result = WHITESPACE.matcher(result).replaceAll(" ").trim();
+        if(normalized.size() < MAX_CACHED) normalized.put(sql, result);
+        return result;
+    }
+
+    /**
+     * Method used for recording an execution of a statement
+     * @param sql The normalized statement
+     * @param nanos The duration of the execution, in nanoseconds
+     * @param rows The number of rows changed, or 0 for queries
+     */
+    public static void record(String sql, long nanos, long rows) {
+        entries.computeIfAbsent(sql, Entry::new).record(nanos, rows);
+    }
+
+    /**
+     * Method used for adding rows returned by an execution of a query
+     * @param sql The normalized statement
+     * @param rows The number of rows returned
+     */
+    public static void addRows(String sql, long rows) {
+        entries.computeIfAbsent(sql, Entry::new).addRows(rows);
+    }
+
+    /**
+     * Method used for removing all recorded statistics
+     */
+    public static void reset() {
+        entries.clear();
+    }
+
+    /**
+     * Method used for generating a report of the recorded statements, ranked by the total execution time
+     * @return Returns the report as a String
+     */
+    public static String report() {
+        List<Entry> ranked = new ArrayList<>(entries.values());
+        ranked.sort((first, second) -> Long.compare(second.getTotalNanos(), first.getTotalNanos()));
+        StringBuilder report = new StringBuilder("SQL statement statistics (ranked by total time)\n");
+        report.append(String.format("%8s %12s %10s %10s %10s %10s %10s %12s  %s%n",
+                "count", "total ms", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "rows", "statement"));
+        for(Entry entry : ranked) report.append(entry.format()).append('\n');
+        return report.toString();
+    }
+
+    /**
+     * The statistics of a single normalized statement
+     */
+    private static class Entry {
+        /**
+         * The normalized statement
+         */
+        private final String sql;
+        /**
+         * The number of executions
+         */
+        private long count;
+        /**
+         * The total execution time, in nanoseconds
+         */
+        private long totalNanos;
+        /**
+         * The longest execution time, in nanoseconds
+         */
+        private long maxNanos;
+        /**
+         * The number of rows returned or changed
+         */
+        private long rows;
+        /**
+         * A uniform sample of the execution times, in nanoseconds
+         */
+        private final long[] samples = new long[MAX_SAMPLES];
+
+        private Entry(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * Method used for recording an execution. Once the sample is full, it is kept uniform by reservoir sampling
+         * @param nanos The duration of the execution, in nanoseconds
+         * @param changedRows The number of rows changed
+         */
+        private synchronized void record(long nanos, long changedRows) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            rows += changedRows;
+            if(count <= MAX_SAMPLES) {
+                samples[(int) count - 1] = nanos;
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(count);
+                if(slot < MAX_SAMPLES) samples[(int) slot] = nanos;
+            }
+        }
+
+        private synchronized void addRows(long returnedRows) {
+            rows += returnedRows;
+        }
+
+        private synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Method used for formatting the statistics of the statement as a line of the report
+         * @return Returns the formatted line
+         */
+        private synchronized String format() {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, MAX_SAMPLES));
+            Arrays.sort(sorted);
+            return String.format("%8d %12.3f %10.3f %10.3f %10.3f %10.3f %10.3f %12d  %s", count, totalNanos / 1e6,
+                    count == 0 ? 0 : totalNanos / 1e6 / count, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                    percentile(sorted, 0.99), maxNanos / 1e6, rows, sql);
+        }
+
+        /**
+         * Method used for getting a percentile of the sampled execution times
+         * @param sorted The sorted samples
+         * @param fraction The percentile, between 0 and 1
+         * @return Returns the percentile in milliseconds
+         */
+        private static double percentile(long[] sorted, double fraction) {
+            if(sorted.length == 0) return 0;
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dbaccess;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps a version counter for every table, increased by every write made through this application, so that
+ * results computed from a table can be reused while its version is unchanged. A write made in a transaction increases
+ * the version again when the transaction ends, so a result computed from the uncommitted state is never reused after
+ * the commit or the rollback
+ */
+public class TableVersions {
+
+    /**
+     * The version of every written table
+     */
+    private static final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    /**
+     * The tables written in the transaction of the current thread
+     */
+    private static final ThreadLocal<Set<String>> pending = new ThreadLocal<>();
+
+    private TableVersions() {
+    }
+
+    /**
+     * Method used for recording a write to a table
+     * @param table The name of the table
+     */
+    public static void bump(String table) {
+        versions.computeIfAbsent(table.toLowerCase(), key -> new AtomicLong()).incrementAndGet();
+        if(!DBConnection.inTransaction()) return;
+        Set<String> tables = pending.get();
+        if(tables == null) pending.set(tables = new HashSet<>());
+        tables.add(table);
+    }
+
+    /**
+     * Method used for getting the version of the given tables
+     * @param tables The names of the tables
+     * @return Returns the sum of the versions of the tables, which grows with every write to any of them
+     */
+    public static long get(String... tables) {
+        long version = 0;
+        for(String table : tables) {
+            AtomicLong counter = versions.get(table.toLowerCase());
+            if(counter != null) version += counter.get();
+        }
+        return version;
+    }
+
+    /**
+     * Method used at the end of the transaction of the current thread for increasing the versions of the tables
+     * written in it
+     */
+    static void endTransaction() {
+        Set<String> tables = pending.get();
+        if(tables == null) return;
+        pending.remove();
+        for(String table : tables) versions.computeIfAbsent(table.toLowerCase(), key -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,102 @@
+package model;
+
+@Table(tableName = "checkpoints", pkField = "fileName", autoIncrement = false,
+        definition = "fileName VARCHAR(512) PRIMARY KEY, byteOffset BIGINT, clientReportCount INT, " +
+                "productReportCount INT, orderReportCount INT, billCount INT, underStockCount INT")
+/**
+ * This class represents the Checkpoint model and is equivalent with a row from the checkpoints table. A checkpoint
+ * stores how far a command file was processed, together with the counters used for naming the generated documents. It
+ * is written in the same transaction as the commands it covers. The table is created by {@link dao.SchemaManager}
+ */
+public class Checkpoint {
+
+    /**
+     * The primary key of the checkpoint, the canonical path of the command file
+     */
+    private String primaryKey;
+    /**
+     * The byte offset of the first command not processed yet
+     */
+    private Long byteOffset;
+    /**
+     * The counter of the client reports
+     */
+    private Integer clientReportCount;
+    /**
+     * The counter of the product reports
+     */
+    private Integer productReportCount;
+    /**
+     * The counter of the order reports
+     */
+    private Integer orderReportCount;
+    /**
+     * The counter of the bills
+     */
+    private Integer billCount;
+    /**
+     * The counter of the under-stock messages
+     */
+    private Integer underStockCount;
+
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public void setPrimaryKey(String primaryKey) {
+        if(!getClass().getAnnotation(Table.class).autoIncrement()) this.primaryKey = primaryKey;
+    }
+
+    private void setPK(String primaryKey) {
+        this.primaryKey = primaryKey;
+    }
+
+    public Long getByteOffset() {
+        return byteOffset;
+    }
+
+    public void setByteOffset(Long byteOffset) {
+        this.byteOffset = byteOffset;
+    }
+
+    public Integer getClientReportCount() {
+        return clientReportCount;
+    }
+
+    public void setClientReportCount(Integer clientReportCount) {
+        this.clientReportCount = clientReportCount;
+    }
+
+    public Integer getProductReportCount() {
+        return productReportCount;
+    }
+
+    public void setProductReportCount(Integer productReportCount) {
+        this.productReportCount = productReportCount;
+    }
+
+    public Integer getOrderReportCount() {
+        return orderReportCount;
+    }
+
+    public void setOrderReportCount(Integer orderReportCount) {
+        this.orderReportCount = orderReportCount;
+    }
+
+    public Integer getBillCount() {
+        return billCount;
+    }
+
+    public void setBillCount(Integer billCount) {
+        this.billCount = billCount;
+    }
+
+    public Integer getUnderStockCount() {
+        return underStockCount;
+    }
+
+    public void setUnderStockCount(Integer underStockCount) {
+        this.underStockCount = underStockCount;
+    }
+
+}
@@ -1,6 +1,7 @@
 package model;
 
-@Table(tableName = "clients", pkField = "id", autoIncrement = true)
+@Table(tableName = "clients", pkField = "id", autoIncrement = true, shardKey = "name",
+        indexes = {@Index(columns = "name", unique = true)})
 /**
  * This class represents the Client model and is equivalent with a row from the clients table
  */
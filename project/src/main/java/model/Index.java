@@ -0,0 +1,17 @@
+package model;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+/**
+ * Annotation used for declaring an index of a table, inside the {@link Table} annotation. If the name is not given it is
+ * generated from the table and column names
+ */
+public @interface Index {
+    String name() default "";
+    String[] columns();
+    boolean unique() default false;
+}
@@ -1,7 +1,8 @@
 package model;
 
 
-@Table(tableName = "products", pkField = "id", autoIncrement = true)
+@Table(tableName = "products", pkField = "id", autoIncrement = true,
+        indexes = {@Index(columns = "productName")})
 /**
  * This class represents the Product model and is equivalent with a row from the products table
  */
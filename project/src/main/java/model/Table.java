@@ -8,10 +8,16 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 /**
- * Annotation used for storing table information
+ * Annotation used for storing table information. The shardKey is the field whose value decides the shard of a row when
+ * the database is sharded; tables without a shard key are stored in the primary database. The indexes are the secondary indexes the table must
+ * have, the primary key is always indexed. The definition is the column list of the table, used for creating it if it
+ * is missing; tables without a definition are created outside the application
  */
 public @interface Table {
     String tableName();
     String pkField();
     boolean autoIncrement();
+    String shardKey() default "";
+    Index[] indexes() default {};
+    String definition() default "";
 }
@@ -1,8 +1,10 @@
 package model.order;
 
+import model.Index;
 import model.Table;
 
-@Table(tableName = "itemOrders", pkField = "id", autoIncrement = true)
+@Table(tableName = "itemOrders", pkField = "id", autoIncrement = true, shardKey = "orderId",
+        indexes = {@Index(columns = "orderId"), @Index(columns = "productId")})
 /**
  * This class represents the ItemOrder model and is equivalent with a row from the itemOrders table
  */
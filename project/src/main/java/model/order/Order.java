@@ -1,8 +1,10 @@
 package model.order;
 
+import model.Index;
 import model.Table;
 
-@Table(tableName = "orders", pkField = "id", autoIncrement = true)
+@Table(tableName = "orders", pkField = "id", autoIncrement = true, shardKey = "clientId",
+        indexes = {@Index(columns = "clientId")})
 /**
  * This class represents the Order model and is equivalent with a row from the orders table
  */
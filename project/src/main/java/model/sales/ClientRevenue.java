@@ -0,0 +1,70 @@
+package model.sales;
+
+import model.Table;
+
+@Table(tableName = "clientrevenue", pkField = "clientId", autoIncrement = false,
+        definition = "clientId INT PRIMARY KEY, clientName VARCHAR(255), unitsBought INT, revenue DOUBLE")
+/**
+ * This class represents the money spent by a client and is equivalent with a row from the clientrevenue summary table.
+ * The table is maintained by {@link business.SalesAggregates} and is created by {@link dao.SchemaManager}
+ */
+public class ClientRevenue {
+
+    /**
+     * The primary key of the row, the primary key of the client
+     */
+    private Integer primaryKey;
+    /**
+     * The name of the client
+     */
+    private String clientName;
+    /**
+     * The number of units bought
+     */
+    private Integer unitsBought;
+    /**
+     * The money spent by the client
+     */
+    private Double revenue;
+
+    public ClientRevenue() {
+        unitsBought = 0;
+        revenue = 0d;
+    }
+
+    public Integer getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public void setPrimaryKey(Integer primaryKey) {
+        if(!getClass().getAnnotation(Table.class).autoIncrement()) this.primaryKey = primaryKey;
+    }
+
+    private void setPK(Integer primaryKey) {
+        this.primaryKey = primaryKey;
+    }
+
+    public String getClientName() {
+        return clientName;
+    }
+
+    public void setClientName(String clientName) {
+        this.clientName = clientName;
+    }
+
+    public Integer getUnitsBought() {
+        return unitsBought;
+    }
+
+    public void setUnitsBought(Integer unitsBought) {
+        this.unitsBought = unitsBought;
+    }
+
+    public Double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(Double revenue) {
+        this.revenue = revenue;
+    }
+}
@@ -0,0 +1,70 @@
+package model.sales;
+
+import model.Table;
+
+@Table(tableName = "productsales", pkField = "productId", autoIncrement = false,
+        definition = "productId INT PRIMARY KEY, productName VARCHAR(255), unitsSold INT, revenue DOUBLE")
+/**
+ * This class represents the sales of a product and is equivalent with a row from the productsales summary table. The
+ * table is maintained by {@link business.SalesAggregates} and is created by {@link dao.SchemaManager}
+ */
+public class ProductSales {
+
+    /**
+     * The primary key of the row, the primary key of the product
+     */
+    private Integer primaryKey;
+    /**
+     * The name of the product
+     */
+    private String productName;
+    /**
+     * The number of units sold
+     */
+    private Integer unitsSold;
+    /**
+     * The money received for the sold units
+     */
+    private Double revenue;
+
+    public ProductSales() {
+        unitsSold = 0;
+        revenue = 0d;
+    }
+
+    public Integer getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public void setPrimaryKey(Integer primaryKey) {
+        if(!getClass().getAnnotation(Table.class).autoIncrement()) this.primaryKey = primaryKey;
+    }
+
+    private void setPK(Integer primaryKey) {
+        this.primaryKey = primaryKey;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public Integer getUnitsSold() {
+        return unitsSold;
+    }
+
+    public void setUnitsSold(Integer unitsSold) {
+        this.unitsSold = unitsSold;
+    }
+
+    public Double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(Double revenue) {
+        this.revenue = revenue;
+    }
+}
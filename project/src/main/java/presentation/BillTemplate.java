@@ -0,0 +1,99 @@
+package presentation;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class renders the bills from a layout computed once: the labels, their positions and the position of every
+ * variable field are fixed when the template is created, and every bill only writes the labels and the fields at those
+ * positions with the shared font, without the paragraph layout of a Document
+ */
+public class BillTemplate {
+
+    /**
+     * Logger object used for logging possible errors
+     */
+    private static final Logger LOGGER = Logger.getLogger(BillTemplate.class.getName());
+    /**
+     * The size of the text
+     */
+    private static final float FONT_SIZE = 12;
+    /**
+     * The distance between the baselines of two lines
+     */
+    private static final float LEADING = 16;
+    /**
+     * The labels of the lines of a bill
+     */
+    private static final String[] LABELS = {"Client name: ", "Product: ", "Product price: ", "Quantity: ", "Total: "};
+
+    /**
+     * The font shared by all the bills
+     */
+    private final BaseFont font;
+    /**
+     * The horizontal position of the labels
+     */
+    private final float left;
+    /**
+     * The baseline of every line
+     */
+    private final float[] baselines = new float[LABELS.length];
+    /**
+     * The horizontal position of the field of every line, right after its label
+     */
+    private final float[] fieldPositions = new float[LABELS.length];
+
+    /**
+     * The constructor computes the layout of the bills
+     */
+    public BillTemplate() {
+        LOGGER.setLevel(Level.WARNING);
+        font = DirectTableRenderer.getFont();
+        Document document = new Document(PageSize.A4);
+        left = document.left();
+        for(int i = 0; i < LABELS.length; i++) {
+            baselines[i] = document.top() - LEADING * (i + 1);
+            fieldPositions[i] = left + font.getWidthPoint(LABELS[i], FONT_SIZE);
+        }
+    }
+
+    /**
+     * Method used for rendering a bill
+     * @param clientName The name of the client
+     * @param productName The name of the product
+     * @param price The price of the product
+     * @param quantity The ordered quantity
+     * @return Returns the content of the bill
+     */
+    public byte[] render(String clientName, String productName, double price, int quantity) {
+        String[] fields = {clientName, productName, String.valueOf(price), String.valueOf(quantity), String.valueOf(quantity * price)};
+        ByteArrayOutputStream output = new ByteArrayOutputStream(2048);
+        Document document = new Document(PageSize.A4);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, output);
+            document.open();
+            PdfContentByte content = writer.getDirectContent();
+            content.beginText();
+            content.setFontAndSize(font, FONT_SIZE);
+            for(int i = 0; i < LABELS.length; i++) {
+                content.showTextAligned(Element.ALIGN_LEFT, LABELS[i], left, baselines[i], 0);
+                content.showTextAligned(Element.ALIGN_LEFT, fields[i], fieldPositions[i], baselines[i], 0);
+            }
+            content.endText();
+        } catch (DocumentException e) {
+            LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
+        }
+        document.close();
+        return output.toByteArray();
+    }
+}
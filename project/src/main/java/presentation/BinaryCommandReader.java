@@ -0,0 +1,235 @@
+package presentation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class reads commands written in the binary format of {@link BinaryCommandWriter}. The file is memory mapped in
+ * windows and the records are decoded straight from the mapped buffer, without copying the file through intermediate
+ * buffers or parsing text
+ */
+public class BinaryCommandReader implements CommandSource {
+
+    /**
+     * Logger object used for logging possible errors
+     */
+    private static final Logger LOGGER = Logger.getLogger(BinaryCommandReader.class.getName());
+    /**
+     * The size of the mapped window of the file
+     */
+    private static final long WINDOW_SIZE = 1L << 28;
+    /**
+     * The command types, indexed by ordinal
+     */
+    private static final Command[] COMMANDS = Command.values();
+
+    /**
+     * The channel of the input file
+     */
+    private FileChannel channel;
+    /**
+     * The size of the input file
+     */
+    private long size;
+    /**
+     * The mapped window of the file
+     */
+    private ByteBuffer buffer;
+    /**
+     * The byte offset in the file of the start of the mapped window
+     */
+    private long windowStart;
+    /**
+     * The buffer used for decoding the strings
+     */
+    private byte[] scratch = new byte[256];
+
+    /**
+     * The type of the current command
+     */
+    private Command commandType;
+    /**
+     * The name of the client obtained from the command
+     */
+    private String clientName;
+    /**
+     * The address of the client obtained from the command
+     */
+    private String clientAddress;
+    /**
+     * The name of the product obtained from the command
+     */
+    private String productName;
+    /**
+     * The name of the table to be reported obtained from the command
+     */
+    private String reportTableName;
+    /**
+     * The ordered quantity / product quantity obtained from the command
+     */
+    private int quantity;
+    /**
+     * The price of the product obtained from the command
+     */
+    private double productPrice;
+
+    /**
+     * The constructor maps the first window of the file provided
+     * @param input The binary input file with commands
+     */
+    public BinaryCommandReader(File input) {
+        this(input, BinaryCommandWriter.HEADER_LENGTH);
+    }
+
+    /**
+     * The constructor maps the file provided starting from the given byte offset, usually the offset saved by the last
+     * checkpoint
+     * @param input The binary input file with commands
+     * @param offset The byte offset of the first command to be read
+     */
+    public BinaryCommandReader(File input, long offset) {
+        LOGGER.setLevel(Level.WARNING);
+        try {
+            channel = new RandomAccessFile(input, "r").getChannel();
+            size = channel.size();
+            map(Math.max(offset, BinaryCommandWriter.HEADER_LENGTH));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be read", e);
+        }
+    }
+
+    /**
+     * Method used for checking if a file is written in the binary format
+     * @param input The file to be checked
+     * @return Returns true if the file starts with the magic number of the binary format
+     */
+    public static boolean isBinary(File input) {
+        try (RandomAccessFile file = new RandomAccessFile(input, "r")) {
+            return file.length() >= BinaryCommandWriter.HEADER_LENGTH && file.readInt() == BinaryCommandWriter.MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method used for mapping the window of the file starting at the given offset
+     * @param offset The byte offset of the window
+     * @throws IOException If the file could not be mapped
+     */
+    private void map(long offset) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, size - offset));
+        windowStart = offset;
+        buffer = mapped;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return buffer != null && windowStart + buffer.position() < size;
+    }
+
+    @Override
+    public void readCommand() {
+        if(!hasNext()) return;
+        try {
+            if(buffer.remaining() < 4 || buffer.remaining() < 4 + buffer.getInt(buffer.position())) map(windowStart + buffer.position());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be read", e);
+            buffer = null;
+            return;
+        }
+        buffer.getInt();
+        commandType = COMMANDS[buffer.get()];
+        switch (commandType) {
+            case ADD_CLIENT:
+            case DELETE_CLIENT:
+                clientName = getString(clientName);
+                clientAddress = getString(clientAddress);
+                break;
+            case ADD_PRODUCT:
+            case DELETE_PRODUCT:
+                productName = getString(productName);
+                quantity = buffer.getInt();
+                productPrice = buffer.getDouble();
+                break;
+            case CREATE_ORDER:
+                clientName = getString(clientName);
+                productName = getString(productName);
+                quantity = buffer.getInt();
+                break;
+            case GENERATE_REPORT:
+                reportTableName = getString(reportTableName);
+                break;
+            default:break;
+        }
+    }
+
+    /**
+     * Method used for decoding a string argument
+     * @param previous The previous value of the argument, kept if the argument is missing
+     * @return Returns the decoded string
+     */
+    private String getString(String previous) {
+        int length = buffer.getShort() & 0xFFFF;
+        if(length == BinaryCommandWriter.NULL_STRING) return previous;
+        if(scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long getPosition() {
+        return buffer == null ? size : windowStart + buffer.position();
+    }
+
+    @Override
+    public void close() {
+        if(channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be closed", e);
+        }
+    }
+
+    @Override
+    public Command getCommandType() {
+        return commandType;
+    }
+
+    @Override
+    public String getClientName() {
+        return clientName;
+    }
+
+    @Override
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    @Override
+    public String getProductName() {
+        return productName;
+    }
+
+    @Override
+    public String getReportTableName() {
+        return reportTableName;
+    }
+
+    @Override
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public double getProductPrice() {
+        return productPrice;
+    }
+}
@@ -0,0 +1,194 @@
+package presentation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class writes commands in the compact binary format read by {@link BinaryCommandReader}. The file starts with the
+ * {@link #MAGIC magic number} and a version byte, followed by one record per command: the length of the record body as
+ * an int, the ordinal of the {@link Command} as a byte and the arguments of the command. Strings are written as an
+ * unsigned short length followed by the UTF-8 bytes, {@link #NULL_STRING} meaning a missing argument
+ * <ul>
+ *     <li>ADD_CLIENT, DELETE_CLIENT: client name, client address</li>
+ *     <li>ADD_PRODUCT, DELETE_PRODUCT: product name, quantity (int), price (double)</li>
+ *     <li>CREATE_ORDER: client name, product name, quantity (int)</li>
+ *     <li>GENERATE_REPORT: table name</li>
+ * </ul>
+ * The class can also be run for converting a text command file: BinaryCommandWriter input.txt output.bin
+ */
+public class BinaryCommandWriter implements Closeable {
+
+    /**
+     * The magic number at the start of a binary command file
+     */
+    public static final int MAGIC = 0x4F4D4342;
+    /**
+     * The version of the format
+     */
+    public static final byte VERSION = 1;
+    /**
+     * The length of the header: the magic number and the version
+     */
+    public static final int HEADER_LENGTH = 5;
+    /**
+     * The length written for a missing string argument
+     */
+    public static final int NULL_STRING = 0xFFFF;
+    /**
+     * The size of the buffer used for writing
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The channel of the output file
+     */
+    private final FileChannel channel;
+    /**
+     * The buffer used for writing
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * The constructor creates the output file and writes the header
+     * @param output The output file
+     * @throws IOException If the file could not be written
+     */
+    public BinaryCommandWriter(File output) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(output, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        buffer.putInt(MAGIC).put(VERSION);
+    }
+
+    /**
+     * Method used for writing the current command of a source
+     * @param source The source of the command
+     * @throws IOException If the file could not be written
+     */
+    public void write(CommandSource source) throws IOException {
+        switch (source.getCommandType()) {
+            case ADD_CLIENT:
+            case DELETE_CLIENT:
+                write(source.getCommandType(), source.getClientName(), source.getClientAddress(), 0, 0);
+                break;
+            case ADD_PRODUCT:
+            case DELETE_PRODUCT:
+                write(source.getCommandType(), source.getProductName(), null, source.getQuantity(), source.getProductPrice());
+                break;
+            case CREATE_ORDER:
+                write(source.getCommandType(), source.getClientName(), source.getProductName(), source.getQuantity(), 0);
+                break;
+            case GENERATE_REPORT:
+                write(source.getCommandType(), source.getReportTableName(), null, 0, 0);
+                break;
+            default:break;
+        }
+    }
+
+    /**
+     * Method used for writing a record
+     * @param command The type of the command
+     * @param first The first string argument
+     * @param second The second string argument, used only by the client and order commands
+     * @param quantity The quantity, used only by the product and order commands
+     * @param price The price, used only by the product commands
+     * @throws IOException If the file could not be written
+     */
+    private void write(Command command, String first, String second, int quantity, double price) throws IOException {
+        byte[] firstBytes = encode(first);
+        byte[] secondBytes = encode(second);
+        boolean hasSecond = command == Command.ADD_CLIENT || command == Command.DELETE_CLIENT || command == Command.CREATE_ORDER;
+        boolean hasQuantity = command != Command.ADD_CLIENT && command != Command.DELETE_CLIENT && command != Command.GENERATE_REPORT;
+        boolean hasPrice = command == Command.ADD_PRODUCT || command == Command.DELETE_PRODUCT;
+        int length = 1 + 2 + length(firstBytes) + (hasSecond ? 2 + length(secondBytes) : 0) + (hasQuantity ? 4 : 0) + (hasPrice ? 8 : 0);
+        ensure(4 + length);
+        buffer.putInt(length).put((byte) command.ordinal());
+        putString(firstBytes);
+        if(hasSecond) putString(secondBytes);
+        if(hasQuantity) buffer.putInt(quantity);
+        if(hasPrice) buffer.putDouble(price);
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    /**
+     * Method used for writing a string argument
+     * @param bytes The UTF-8 bytes of the argument, null if it is missing
+     */
+    private void putString(byte[] bytes) {
+        if(bytes == null) {
+            buffer.putShort((short) NULL_STRING);
+            return;
+        }
+        if(bytes.length >= NULL_STRING) throw new IllegalArgumentException("The argument is too long: " + bytes.length + " bytes");
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Method used for making room in the buffer, writing its content to the file if needed
+     * @param length The number of bytes needed
+     * @throws IOException If the file could not be written
+     */
+    private void ensure(int length) throws IOException {
+        if(buffer.remaining() >= length) return;
+        flush();
+        if(buffer.capacity() < length) throw new IllegalArgumentException("The command is too long: " + length + " bytes");
+    }
+
+    /**
+     * Method used for writing the buffered records to the file
+     * @throws IOException If the file could not be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Method used for converting a text command file to the binary format
+     * @param input The text command file
+     * @param output The binary command file
+     * @return Returns the number of converted commands
+     * @throws IOException If the files could not be read or written
+     */
+    public static long convert(File input, File output) throws IOException {
+        Controller controller = new Controller(input);
+        long count = 0;
+        try (BinaryCommandWriter writer = new BinaryCommandWriter(output)) {
+            while(controller.hasNext()) {
+                controller.readCommand();
+                if(controller.getCommandType() == null) continue;
+                writer.write(controller);
+                count++;
+            }
+        } finally {
+            controller.close();
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) return;
+        long count = convert(new File(args[0]), new File(args[1]));
+        System.out.println("Converted " + count + " commands");
+    }
+}
@@ -0,0 +1,164 @@
+package presentation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class writes the rows of a report in a compact columnar binary format. The rows are grouped in blocks of
+ * {@link #BLOCK_ROWS} rows and every block stores its values column after column, so a reader can load a single column
+ * without decoding the others. The file holds:
+ * <ul>
+ *     <li>the {@link #MAGIC magic number} (int), the {@link #VERSION version} (byte), the number of columns (unsigned
+ *     short) and the name of every column</li>
+ *     <li>the blocks: the number of rows (int), then for every column the type of its values in the block (byte), a
+ *     bitmap with one bit per row set for the null values and the values of the rows which are not null</li>
+ *     <li>an int 0 marking the end of the blocks</li>
+ * </ul>
+ * The types are {@link #INT} (4 bytes), {@link #LONG} (8 bytes), {@link #DOUBLE} (8 bytes) and {@link #STRING}. Strings
+ * and names are written as their UTF-8 length, encoded as an unsigned varint, followed by the UTF-8 bytes. All numbers
+ * are big-endian
+ */
+public class ColumnarExportWriter extends ExportWriter {
+
+    /**
+     * The magic number at the start of a columnar file
+     */
+    public static final int MAGIC = 0x4F4D4346;
+    /**
+     * The version of the format
+     */
+    public static final byte VERSION = 1;
+    /**
+     * The type of a column whose values are all Integers, Shorts or Bytes
+     */
+    public static final byte INT = 1;
+    /**
+     * The type of a column whose values are all integral numbers
+     */
+    public static final byte LONG = 2;
+    /**
+     * The type of a column whose values are all numbers
+     */
+    public static final byte DOUBLE = 3;
+    /**
+     * The type of any other column, whose values are written as text
+     */
+    public static final byte STRING = 4;
+    /**
+     * The number of rows of a block
+     */
+    private static final int BLOCK_ROWS = 4096;
+
+    /**
+     * The values of the current block, by column
+     */
+    private final Object[][] block;
+    /**
+     * The number of rows of the current block
+     */
+    private int rows;
+
+    /**
+     * The constructor opens the output file and writes the header
+     * @param fileName The name of the output file
+     * @param columns The columns of the report
+     * @param gzip True if the output is compressed with gzip
+     * @throws IOException If the file could not be written
+     */
+    public ColumnarExportWriter(String fileName, List<String> columns, boolean gzip) throws IOException {
+        super(fileName, gzip);
+        block = new Object[columns.size()][BLOCK_ROWS];
+        buffer.putInt(MAGIC).put(VERSION).putShort((short) columns.size());
+        for(String column : columns) putString(column);
+    }
+
+    @Override
+    public void handle(Object[] values) throws IOException {
+        for(int i = 0; i < block.length; i++) block[i][rows] = i < values.length ? values[i] : null;
+        if(++rows == BLOCK_ROWS) writeBlock();
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        if(rows > 0) writeBlock();
+        ensure(4);
+        buffer.putInt(0);
+    }
+
+    /**
+     * Method used for writing the current block
+     * @throws IOException If the file could not be written
+     */
+    private void writeBlock() throws IOException {
+        ensure(4);
+        buffer.putInt(rows);
+        byte[] nulls = new byte[(rows + 7) / 8];
+        for(Object[] column : block) {
+            byte type = typeOf(column);
+            Arrays.fill(nulls, (byte) 0);
+            for(int r = 0; r < rows; r++) if(column[r] == null) nulls[r >> 3] |= 1 << (r & 7);
+            ensure(1);
+            buffer.put(type);
+            put(nulls);
+            for(int r = 0; r < rows; r++) {
+                Object value = column[r];
+                if(value == null) continue;
+                switch (type) {
+                    case INT:
+                        ensure(4);
+                        buffer.putInt(((Number) value).intValue());
+                        break;
+                    case LONG:
+                        ensure(8);
+                        buffer.putLong(((Number) value).longValue());
+                        break;
+                    case DOUBLE:
+                        ensure(8);
+                        buffer.putDouble(((Number) value).doubleValue());
+                        break;
+                    default:
+                        putString(value.toString());
+                }
+                column[r] = null;
+            }
+        }
+        rows = 0;
+    }
+
+    /**
+     * Method used for choosing the narrowest type able to hold all values of a column of the current block
+     * @param column The values of the column
+     * @return Returns the type
+     */
+    private byte typeOf(Object[] column) {
+        byte type = INT;
+        for(int r = 0; r < rows; r++) {
+            Object value = column[r];
+            if(value == null || value instanceof Integer || value instanceof Short || value instanceof Byte) continue;
+            if(value instanceof Long) type = (byte) Math.max(type, LONG);
+            else if(value instanceof Number && !(value instanceof BigDecimal)) type = (byte) Math.max(type, DOUBLE);
+            else return STRING;
+        }
+        return type;
+    }
+
+    /**
+     * Method used for writing a string as its varint length followed by its UTF-8 bytes
+     * @param value The string to be written
+     * @throws IOException If the file could not be written
+     */
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(5);
+        int length = bytes.length;
+        while(length >= 0x80) {
+            buffer.put((byte) (length | 0x80));
+            length >>>= 7;
+        }
+        buffer.put((byte) length);
+        put(bytes);
+    }
+}
@@ -0,0 +1,58 @@
+package presentation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Benchmark comparing the parsing of the text command format by {@link Controller} and by
+ * {@link ParallelCommandReader} with the decoding of the binary format by {@link BinaryCommandReader}. Usage: CommandParsingBenchmark [number of commands] [iterations]
+ */
+public class CommandParsingBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File text = File.createTempFile("commands", ".txt");
+        File binary = File.createTempFile("commands", ".bin");
+        text.deleteOnExit();
+        binary.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(text, "UTF-8")) {
+            for(int i = 0; i < commands; i++) {
+                switch (i % 4) {
+                    case 0: writer.println("Insert client: Client " + (i % 1000) + ", Street " + i); break;
+                    case 1: writer.println("Insert product: product" + (i % 500) + ", " + (i % 90 + 10) + ", " + (i % 7 + 0.5)); break;
+                    case 2: writer.println("Order: Client " + (i % 1000) + ", product" + (i % 500) + ", " + (i % 9 + 1)); break;
+                    default: writer.println(i % 400 == 3 ? "Report product" : "Delete client: Client " + (i % 1000));
+                }
+            }
+        }
+        BinaryCommandWriter.convert(text, binary);
+        System.out.printf("%d commands, text %d bytes, binary %d bytes%n", commands, text.length(), binary.length());
+        for(int i = 0; i < iterations; i++) {
+            long textNanos = time(new Controller(text));
+            long parallelNanos = time(new ParallelCommandReader(text));
+            long binaryNanos = time(new BinaryCommandReader(binary));
+            System.out.printf("iteration %d: text %.1f ns/command, parallel text %.1f ns/command, binary %.1f ns/command%n",
+                    i, (double) textNanos / commands, (double) parallelNanos / commands, (double) binaryNanos / commands);
+        }
+    }
+
+    /**
+     * Method used for reading all commands of a source
+     * @param source The source to be read
+     * @return Returns the elapsed time in nanoseconds
+     */
+    private static long time(CommandSource source) {
+        long start = System.nanoTime();
+        long checksum = 0;
+        while(source.hasNext()) {
+            source.readCommand();
+            checksum += source.getCommandType().ordinal() + source.getQuantity();
+        }
+        long elapsed = System.nanoTime() - start;
+        source.close();
+        if(checksum == 42) System.out.println();
+        return elapsed;
+    }
+}
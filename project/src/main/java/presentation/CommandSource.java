@@ -0,0 +1,43 @@
+package presentation;
+
+/**
+ * Interface used for reading commands, regardless of the format of the input. After {@link #readCommand()} the getters
+ * return the type and the arguments of the current command; arguments missing from a command keep their previous value
+ */
+public interface CommandSource {
+    /**
+     * Method used for checking if the input has more commands
+     * @return Returns true if there is another command
+     */
+    boolean hasNext();
+
+    /**
+     * Method used for getting the next command
+     */
+    void readCommand();
+
+    /**
+     * Method used for getting the byte offset of the input right after the current command, used by checkpoints
+     * @return Returns the byte offset
+     */
+    long getPosition();
+
+    /**
+     * Method used for closing the input
+     */
+    void close();
+
+    Command getCommandType();
+
+    String getClientName();
+
+    String getClientAddress();
+
+    String getProductName();
+
+    String getReportTableName();
+
+    int getQuantity();
+
+    double getProductPrice();
+}
@@ -1,16 +1,21 @@
 package presentation;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 import java.util.logging.Logger;
 
 /**
- * The Controller class provides methods for decoding the commands
+ * The Controller class provides methods for decoding the commands. The controller keeps track of the byte offset of the
+ * commands in the input file, so the reading can be resumed from a checkpoint
  */
-public class Controller {
+public class Controller implements CommandSource {
 
     /**
      * Logger object used for logging possible errors
@@ -28,9 +33,54 @@ public class Controller {
     private String command;
 
     /**
-     * The scanner used for reading the input
+     * The separator of the arguments of a command
      */
-    private Scanner scanner;
+    private static final Pattern SEPARATOR = Pattern.compile(", ");
+
+    /**
+     * The size of the buffer used for reading the input
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The stream used for reading the input
+     */
+    private InputStream input;
+
+    /**
+     * The byte offset in the input file right after the current command
+     */
+    private long position;
+
+    /**
+     * The next non blank line of the input, null if it was not read yet
+     */
+    private String nextLine;
+
+    /**
+     * The byte offset in the input file right after {@link #nextLine}
+     */
+    private long nextPosition;
+
+    /**
+     * The buffer used for reading the input
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * The position of the next unread byte of {@link #buffer}
+     */
+    private int bufferPosition;
+
+    /**
+     * The number of bytes read in {@link #buffer}
+     */
+    private int bufferLimit;
+
+    /**
+     * The buffer used for collecting the bytes of a line
+     */
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
 
     /**
      * The name of the client obtained from the command
@@ -57,43 +107,81 @@ public class Controller {
      */
     private double productPrice;
 
+    @Override
     public String getClientName() {
         return clientName;
     }
 
+    @Override
     public String getClientAddress() {
         return clientAddress;
     }
 
+    @Override
     public String getProductName() {
         return productName;
     }
 
+    @Override
     public String getReportTableName() {
         return reportTableName;
     }
 
+    @Override
     public int getQuantity() {
         return quantity;
     }
 
+    @Override
     public double getProductPrice() {
         return productPrice;
     }
 
     /**
-     * The constructor initializes the scanner based on the file provided
+     * The constructor initializes a controller without an input file, used only for decoding command lines received
+     * from other sources through {@link #parse(String)}
+     */
+    public Controller() {
+        LOGGER.setLevel(Level.WARNING);
+    }
+
+    /**
+     * The constructor initializes the reader based on the file provided
      * @param input The input file with commands
      */
     public Controller(File input) {
+        this(input, 0);
+    }
+
+    /**
+     * The constructor initializes the reader based on the file provided, in resume mode: the reading starts at the
+     * given byte offset, usually the offset saved by the last checkpoint
+     * @param input The input file with commands
+     * @param offset The byte offset of the first command to be read
+     */
+    public Controller(File input, long offset) {
         LOGGER.setLevel(Level.WARNING);
         try {
-            scanner = new Scanner(input);
-        } catch (FileNotFoundException e) {
+            FileInputStream stream = new FileInputStream(input);
+            stream.getChannel().position(offset);
+            this.input = stream;
+            position = offset;
+            nextPosition = offset;
+        } catch (IOException e) {
             LOGGER.log(Level.WARNING, "The file could not be found", e);
         }
     }
 
+    /**
+     * Method used for getting the byte offset of the input right after the current command
+     * @return Returns the byte offset
+     */
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
     public Command getCommandType() {
         return commandType;
     }
@@ -101,46 +189,71 @@ public class Controller {
     /**
      * Method used for getting the next command
      */
+    @Override
     public void readCommand() {
-        if(scanner.hasNext()) {
-            command = scanner.nextLine();
+        if(hasNext()) {
+            command = nextLine;
+            position = nextPosition;
+            nextLine = null;
         } else return;
-        if(command.toUpperCase().startsWith("INSERT CLIENT: ")) {
+        parse(command);
+    }
+
+    /**
+     * Method used for decoding a command line, which becomes the current command. If the line is not a known command
+     * the current command type is not changed
+     * @param line The command line to be decoded
+     * @return Returns true if the line is a known command
+     */
+    public boolean parse(String line) {
+        command = line;
+        if(startsWith("INSERT CLIENT: ")) {
             commandType = Command.ADD_CLIENT;
             getClientInfo();
         }
-        else if(command.toUpperCase().startsWith("DELETE CLIENT: ")){
+        else if(startsWith("DELETE CLIENT: ")){
             commandType = Command.DELETE_CLIENT;
             getClientInfo();
         }
-        else if(command.toUpperCase().startsWith("INSERT PRODUCT: ")){
+        else if(startsWith("INSERT PRODUCT: ")){
             commandType = Command.ADD_PRODUCT;
             getProductInfo();
         }
-        else if(command.toUpperCase().startsWith("DELETE PRODUCT: ")){
+        else if(startsWith("DELETE PRODUCT: ")){
             commandType = Command.DELETE_PRODUCT;
             getProductInfo();
         }
-        else if(command.toUpperCase().startsWith("ORDER: ")){
+        else if(startsWith("ORDER: ")){
             commandType = Command.CREATE_ORDER;
             getOrderInfo();
         }
-        else if(command.toUpperCase().startsWith("REPORT ")){
+        else if(startsWith("REPORT ")){
             commandType = Command.GENERATE_REPORT;
             getReportInfo();
         }
+        else return false;
+        return true;
+    }
+
+    /**
+     * Method used for checking, ignoring case, if the current command starts with a prefix
+     * @param prefix The prefix to be checked
+     * @return Returns true if the command starts with the prefix
+     */
+    private boolean startsWith(String prefix) {
+        return command.regionMatches(true, 0, prefix, 0, prefix.length());
     }
 
     private void getClientInfo() {
         String sub = command.substring(15);
-        String[] info = sub.split(", ");
+        String[] info = SEPARATOR.split(sub);
         if (info.length >= 1) clientName = info[0];
         if(info.length >= 2) clientAddress = info[1];
     }
 
     private void getProductInfo() {
         String sub = command.substring(16);
-        String[] info = sub.split(", ");
+        String[] info = SEPARATOR.split(sub);
         if(info.length >= 1) productName = info[0];
         if(info.length >= 2) quantity = Integer.parseInt(info[1]);
         if(info.length >= 3) productPrice = Double.parseDouble(info[2]);
@@ -148,7 +261,7 @@ public class Controller {
 
     private void getOrderInfo() {
         String sub = command.substring(7);
-        String[] info = sub.split(", ");
+        String[] info = SEPARATOR.split(sub);
         if(info.length >= 1) clientName = info[0];
         if(info.length >= 2) productName = info[1];
         if(info.length >= 3) quantity = Integer.parseInt(info[2]);
@@ -158,12 +271,64 @@ public class Controller {
         reportTableName = command.substring(7);
     }
 
+    /**
+     * Method used for checking if the input has more commands. Blank lines are skipped
+     * @return Returns true if there is another command
+     */
+    @Override
     public boolean hasNext() {
-        return scanner.hasNext();
+        while(nextLine == null) {
+            String line = readLine();
+            if(line == null) return false;
+            if(!line.trim().isEmpty()) nextLine = line;
+        }
+        return true;
     }
 
-    public void closeScanner() {
-        scanner.close();
+    /**
+     * Method used for reading the next line of the input and advancing {@link #nextPosition}
+     * @return Returns the line without the line terminator, or null at the end of the input
+     */
+    private String readLine() {
+        if(input == null) return null;
+        lineBuffer.reset();
+        try {
+            while(true) {
+                if(bufferPosition == bufferLimit) {
+                    bufferLimit = input.read(buffer);
+                    bufferPosition = 0;
+                    if(bufferLimit <= 0) {
+                        bufferLimit = 0;
+                        if(lineBuffer.size() == 0) return null;
+                        break;
+                    }
+                }
+                int start = bufferPosition;
+                while(bufferPosition < bufferLimit && buffer[bufferPosition] != '\n') bufferPosition++;
+                lineBuffer.write(buffer, start, bufferPosition - start);
+                nextPosition += bufferPosition - start;
+                if(bufferPosition < bufferLimit) {
+                    bufferPosition++;
+                    nextPosition++;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be read", e);
+            return null;
+        }
+        String line = new String(lineBuffer.toByteArray(), Charset.defaultCharset());
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    @Override
+    public void close() {
+        if(input == null) return;
+        try {
+            input.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be closed", e);
+        }
     }
 
 }
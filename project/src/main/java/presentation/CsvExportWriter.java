@@ -0,0 +1,63 @@
+package presentation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * This class writes the rows of a report as CSV, in UTF-8, with the column names on the first line. Values holding a
+ * comma, a quote or a line break are quoted, null values are written as empty fields
+ */
+public class CsvExportWriter extends ExportWriter {
+
+    /**
+     * The line being encoded
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * The constructor opens the output file and writes the header line
+     * @param fileName The name of the output file
+     * @param columns The columns of the report
+     * @param gzip True if the output is compressed with gzip
+     * @throws IOException If the file could not be written
+     */
+    public CsvExportWriter(String fileName, List<String> columns, boolean gzip) throws IOException {
+        super(fileName, gzip);
+        handle(columns.toArray());
+    }
+
+    @Override
+    public void handle(Object[] values) throws IOException {
+        line.setLength(0);
+        for(int i = 0; i < values.length; i++) {
+            if(i > 0) line.append(',');
+            if(values[i] != null) appendField(values[i].toString());
+        }
+        line.append("\r\n");
+        put(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method used for appending a field to the line, quoted if needed
+     * @param value The value of the field
+     */
+    private void appendField(String value) {
+        boolean quoted = false;
+        for(int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if(!quoted) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"') line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
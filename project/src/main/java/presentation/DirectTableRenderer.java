@@ -0,0 +1,527 @@
+package presentation;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class renders a report table straight on the content of the pages, without building a PdfPTable. The grid and
+ * the text are drawn with a single shared font, the column widths are computed once from the header and a sample of the
+ * rows, and the pages are broken when the next row does not fit, repeating the header. The text of a cell which does
+ * not fit its column is wrapped at the spaces, or anywhere in a word longer than the column, and the row grows to the
+ * tallest cell. Only a cell taller than a whole page is shortened with "..."
+ */
+public class DirectTableRenderer {
+
+    /**
+     * Logger object used for logging possible errors
+     */
+    private static final Logger LOGGER = Logger.getLogger(DirectTableRenderer.class.getName());
+    /**
+     * The number of rows measured for computing the column widths
+     */
+    private static final int SAMPLE_ROWS = 1000;
+    /**
+     * The padding of the cells
+     */
+    private static final float PADDING = 10;
+    /**
+     * The size of the text
+     */
+    private static final float FONT_SIZE = 15;
+    /**
+     * The height of a line of text
+     */
+    private static final float LINE_HEIGHT = FONT_SIZE * 1.2f;
+    /**
+     * The style of the header cells
+     */
+    private static final CellStyle HEADER = new CellStyle(new BaseColor(114,181,183), BaseColor.WHITE, 1.2f);
+    /**
+     * The style of the other cells
+     */
+    private static final CellStyle BODY = new CellStyle(null, BaseColor.BLACK, 0.5f);
+    /**
+     * The color of the grid
+     */
+    private static final BaseColor BORDER_COLOR = new BaseColor(39,65,67);
+    /**
+     * The methods reading the values of the rows, by row class
+     */
+    private static final Map<Class<?>, Method[]> getters = new ConcurrentHashMap<>();
+    /**
+     * The font shared by all the reports
+     */
+    private static BaseFont font;
+
+    /**
+     * The constructor loads the shared font
+     */
+    public DirectTableRenderer() {
+        LOGGER.setLevel(Level.WARNING);
+        getFont();
+    }
+
+    /**
+     * Method used for checking if the renderer can draw reports
+     * @return Returns true if the shared font is loaded
+     */
+    public boolean isAvailable() {
+        return getFont() != null;
+    }
+
+    /**
+     * Method used for getting the shared font, loading it the first time
+     * @return Returns the font, or null if it could not be loaded
+     */
+    static synchronized BaseFont getFont() {
+        if(font == null) {
+            try {
+                font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+            } catch (DocumentException | IOException e) {
+                LOGGER.log(Level.WARNING, "The font could not be loaded", e);
+            }
+        }
+        return font;
+    }
+
+    /**
+     * Method used for getting the values of a row, in the order of the report columns: the primary key followed by the
+     * declared fields. The getters of a class are looked up only once
+     * @param row The row
+     * @return Returns the values as text
+     */
+    static String[] getValues(Object row) {
+        Method[] methods = getters.computeIfAbsent(row.getClass(), DirectTableRenderer::findGetters);
+        String[] values = new String[methods.length];
+        for(int i = 0; i < methods.length; i++) {
+            try {
+                values[i] = String.valueOf(methods[i].invoke(row));
+            } catch (IllegalAccessException e) {
+                LOGGER.log(Level.WARNING, "The provided class is not accessible", e);
+            } catch (InvocationTargetException e) {
+                LOGGER.log(Level.WARNING, "The invoked method throws exceptions", e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Method used for finding the getters of the primary key and of the declared fields of a class
+     * @param type The class of the rows
+     * @return Returns the getters
+     */
+    private static Method[] findGetters(Class<?> type) {
+        List<Method> methods = new ArrayList<>();
+        try {
+            methods.add(new PropertyDescriptor("primaryKey", type, "getPrimaryKey", null).getReadMethod());
+            for(Field field : type.getDeclaredFields()) {
+                if(field.getName().equals("primaryKey") || field.isSynthetic()) continue;
+                methods.add(new PropertyDescriptor(field.getName(), type).getReadMethod());
+            }
+        } catch (IntrospectionException e) {
+            LOGGER.log(Level.WARNING, "An exception occurs during introspection", e);
+        }
+        return methods.toArray(new Method[0]);
+    }
+
+    /**
+     * Method used for rendering a report in a file
+     * @param fileName The name of the file to be generated
+     * @param rows The rows of the report
+     * @param columns The columns of the report
+     * @return Returns true if the report was written
+     */
+    public boolean render(String fileName, ArrayList<?> rows, ArrayList<String> columns) {
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16)) {
+            return render(output, rows, columns);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be written", e);
+        }
+        return false;
+    }
+
+    /**
+     * Method used for rendering a report in a stream
+     * @param output The stream receiving the document
+     * @param rows The rows of the report
+     * @param columns The columns of the report
+     * @return Returns true if the report was drawn
+     */
+    public boolean render(OutputStream output, List<?> rows, List<String> columns) {
+        return render(output, rows, columns, computeWidths(rows, columns));
+    }
+
+    /**
+     * Method used for rendering a part of a report in a stream, with the column widths of the whole report, so the
+     * parts can be concatenated
+     * @param output The stream receiving the document
+     * @param rows The rows of the part
+     * @param columns The columns of the report
+     * @param widths The widths of the columns, computed by {@link #computeWidths(List, List)} for the whole report
+     * @return Returns true if the part was drawn
+     */
+    public boolean render(OutputStream output, List<?> rows, List<String> columns, float[] widths) {
+        Document document = new Document(PageSize.A4);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, output);
+            writer.setCloseStream(false);
+            document.open();
+            if(columns.isEmpty()) {
+                document.close();
+                return true;
+            }
+            String[] header = columns.toArray(new String[0]);
+            PageWriter page = new PageWriter(writer.getDirectContent(), document, widths);
+            page.start(header);
+            List<List<String>> cells = new ArrayList<>();
+            for(Object row : rows) {
+                int lines = wrapRow(getValues(row), widths, cells);
+                if(!page.fits(lines)) {
+                    page.finish();
+                    document.newPage();
+                    page.start(header);
+                }
+                page.addRow(cells, lines, BODY);
+            }
+            page.finish();
+            document.close();
+            return true;
+        } catch (DocumentException e) {
+            LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
+        }
+        if(document.isOpen()) document.close();
+        return false;
+    }
+
+    /**
+     * Method used for computing the column widths: every column wants the width of its longest text among the header
+     * and the first {@link #SAMPLE_ROWS} rows. If the page is wider, the widths are scaled to the width of the page.
+     * Otherwise the page is shared out from the narrowest column: a column wanting less than an equal share of the
+     * width left keeps its width, the others split the rest equally and wrap their text
+     * @param rows The rows of the report
+     * @param columns The columns of the report
+     * @return Returns the widths of the columns
+     */
+    public float[] computeWidths(List<?> rows, List<String> columns) {
+        Document document = new Document(PageSize.A4);
+        float[] widths = new float[columns.size()];
+        for(int i = 0; i < widths.length; i++) widths[i] = font.getWidthPoint(columns.get(i), FONT_SIZE);
+        int sampled = Math.min(rows.size(), SAMPLE_ROWS);
+        for(int r = 0; r < sampled; r++) {
+            String[] values = getValues(rows.get(r));
+            for(int i = 0; i < widths.length && i < values.length; i++)
+                widths[i] = Math.max(widths[i], font.getWidthPoint(values[i], FONT_SIZE));
+        }
+        float available = document.right() - document.left();
+        float total = 0;
+        for(int i = 0; i < widths.length; i++) {
+            widths[i] += 2 * PADDING;
+            total += widths[i];
+        }
+        if(total <= available) {
+            for(int i = 0; i < widths.length; i++) widths[i] = widths[i] * available / total;
+            return widths;
+        }
+        Integer[] order = new Integer[widths.length];
+        for(int i = 0; i < order.length; i++) order[i] = i;
+        float[] wanted = widths.clone();
+        Arrays.sort(order, (first, second) -> Float.compare(wanted[first], wanted[second]));
+        for(int i = 0; i < order.length; i++) {
+            widths[order[i]] = Math.min(wanted[order[i]], available / (order.length - i));
+            available -= widths[order[i]];
+        }
+        return widths;
+    }
+
+    /**
+     * Method used for finding the page breaks of a report: the rows are measured the same way {@link #render} draws
+     * them, so a part of the report starting at a page break is laid out exactly as in the whole report
+     * @param rows The rows of the report
+     * @param columns The columns of the report
+     * @param widths The widths of the columns, computed by {@link #computeWidths(List, List)}
+     * @return Returns the index of the first row of every page
+     */
+    public int[] getPageStarts(List<?> rows, List<String> columns, float[] widths) {
+        Document document = new Document(PageSize.A4);
+        float headerHeight = getRowHeight(wrapRow(columns.toArray(new String[0]), widths, null));
+        int[] starts = new int[16];
+        int pages = 1;
+        float y = document.top();
+        y -= headerHeight;
+        boolean pageEmpty = true;
+        for(int r = 0; r < rows.size(); r++) {
+            float height = getRowHeight(wrapRow(getValues(rows.get(r)), widths, null));
+            if(!pageEmpty && y - height < document.bottom()) {
+                if(pages == starts.length) starts = Arrays.copyOf(starts, pages * 2);
+                starts[pages++] = r;
+                y = document.top();
+                y -= headerHeight;
+            }
+            y -= height;
+            pageEmpty = false;
+        }
+        return Arrays.copyOf(starts, pages);
+    }
+
+    /**
+     * Method used for getting the height of a row
+     * @param lines The number of lines of the tallest cell
+     * @return Returns the height
+     */
+    private static float getRowHeight(int lines) {
+        return lines * LINE_HEIGHT + 2 * PADDING;
+    }
+
+    /**
+     * Method used for getting the number of lines of a cell which still leaves room for the header on a page
+     * @return Returns the maximum number of lines of a cell
+     */
+    private static int getMaxLines() {
+        Document document = new Document(PageSize.A4);
+        return Math.max(1, (int) ((document.top() - document.bottom() - 4 * PADDING) / LINE_HEIGHT) - 1);
+    }
+
+    /**
+     * Method used for wrapping the cells of a row in their columns
+     * @param values The text of the cells
+     * @param widths The widths of the columns
+     * @param cells Receives the lines of every cell, or null if only the lines are counted
+     * @return Returns the number of lines of the tallest cell
+     */
+    private static int wrapRow(String[] values, float[] widths, List<List<String>> cells) {
+        if(cells != null) cells.clear();
+        int maxLines = getMaxLines();
+        int lines = 1;
+        for(int i = 0; i < widths.length; i++) {
+            List<String> cell = cells == null ? null : new ArrayList<>(1);
+            String text = i < values.length && values[i] != null ? values[i] : "";
+            lines = Math.max(lines, wrap(text, widths[i] - 2 * PADDING, maxLines, cell));
+            if(cells != null) cells.add(cell);
+        }
+        return lines;
+    }
+
+    /**
+     * Method used for breaking a text in lines fitting a width, in a single pass over its characters: a line is broken
+     * at its last space, or before the first character which does not fit if it has no space. If there are more than
+     * maxLines lines, the last one is shortened with "..."
+     * @param text The text
+     * @param width The available width
+     * @param maxLines The maximum number of lines
+     * @param lines Receives the lines, or null if they are only counted
+     * @return Returns the number of lines
+     */
+    static int wrap(String text, float width, int maxLines, List<String> lines) {
+        if(font.getWidthPoint(text, FONT_SIZE) <= width) {
+            if(lines != null) lines.add(text);
+            return 1;
+        }
+        int count = 0;
+        int start = 0;
+        while(start < text.length()) {
+            if(count == maxLines - 1) {
+                if(lines != null) lines.add(shorten(text, start, width));
+                return maxLines;
+            }
+            int end = start;
+            int lastSpace = -1;
+            float used = 0;
+            while(end < text.length()) {
+                char next = text.charAt(end);
+                float advance = font.getWidthPoint(next, FONT_SIZE);
+                if(used + advance > width && end > start) break;
+                if(next == ' ') lastSpace = end;
+                used += advance;
+                end++;
+            }
+            int next = end;
+            if(end < text.length() && lastSpace > start) {
+                end = lastSpace;
+                next = lastSpace + 1;
+            }
+            if(lines != null) lines.add(text.substring(start, end));
+            count++;
+            start = next;
+            while(start < text.length() && text.charAt(start) == ' ') start++;
+        }
+        return count;
+    }
+
+    /**
+     * Method used for getting the last line of a text which does not fit its lines, shortened with "..." if needed
+     * @param text The text
+     * @param start The index of the first character of the line
+     * @param width The available width
+     * @return Returns the line
+     */
+    private static String shorten(String text, int start, float width) {
+        if(font.getWidthPoint(text.substring(start), FONT_SIZE) <= width) return text.substring(start);
+        float used = font.getWidthPoint("...", FONT_SIZE);
+        int end = start;
+        while(end < text.length()) {
+            float advance = font.getWidthPoint(text.charAt(end), FONT_SIZE);
+            if(used + advance > width) break;
+            used += advance;
+            end++;
+        }
+        return text.substring(start, end) + "...";
+    }
+
+    /**
+     * The look of a kind of cells, shared by all the cells of that kind
+     */
+    private static class CellStyle {
+        /**
+         * The background color, null for none
+         */
+        private final BaseColor background;
+        /**
+         * The color of the text
+         */
+        private final BaseColor textColor;
+        /**
+         * The width of the border
+         */
+        private final float borderWidth;
+
+        private CellStyle(BaseColor background, BaseColor textColor, float borderWidth) {
+            this.background = background;
+            this.textColor = textColor;
+            this.borderWidth = borderWidth;
+        }
+    }
+
+    /**
+     * The drawing state of the current page
+     */
+    private static class PageWriter {
+        /**
+         * The content of the pages
+         */
+        private final PdfContentByte content;
+        /**
+         * The document, used for the margins
+         */
+        private final Document document;
+        /**
+         * The widths of the columns
+         */
+        private final float[] widths;
+        /**
+         * The horizontal position of the left border of every column, followed by the right border of the table
+         */
+        private final float[] borders;
+        /**
+         * The top of the table on the current page
+         */
+        private float top;
+        /**
+         * The top of the next row
+         */
+        private float y;
+        /**
+         * True while the current page has only the header
+         */
+        private boolean pageEmpty;
+
+        private PageWriter(PdfContentByte content, Document document, float[] widths) {
+            this.content = content;
+            this.document = document;
+            this.widths = widths;
+            borders = new float[widths.length + 1];
+            borders[0] = document.left();
+            for(int i = 0; i < widths.length; i++) borders[i + 1] = borders[i] + widths[i];
+        }
+
+        /**
+         * Method used for starting a page with the header row
+         * @param header The header of the table
+         */
+        private void start(String[] header) {
+            top = document.top();
+            y = top;
+            List<List<String>> cells = new ArrayList<>();
+            int lines = wrapRow(header, widths, cells);
+            content.saveState();
+            content.setColorFill(HEADER.background);
+            content.rectangle(borders[0], y - getRowHeight(lines), borders[borders.length - 1] - borders[0], getRowHeight(lines));
+            content.fill();
+            content.restoreState();
+            addRow(cells, lines, HEADER);
+            pageEmpty = true;
+        }
+
+        /**
+         * Method used for checking if a row fits on the current page
+         * @param lines The number of lines of the row
+         * @return Returns true if the row fits below the previous one, or the page has no other row
+         */
+        private boolean fits(int lines) {
+            return pageEmpty || y - getRowHeight(lines) >= document.bottom();
+        }
+
+        /**
+         * Method used for drawing a row below the previous one
+         * @param cells The lines of the cells
+         * @param lines The number of lines of the tallest cell
+         * @param style The style of the cells
+         */
+        private void addRow(List<List<String>> cells, int lines, CellStyle style) {
+            content.beginText();
+            content.setFontAndSize(font, FONT_SIZE);
+            content.setColorFill(style.textColor);
+            for(int i = 0; i < widths.length; i++) {
+                float baseline = y - PADDING - FONT_SIZE;
+                for(String line : cells.get(i)) {
+                    content.showTextAligned(Element.ALIGN_CENTER, line, (borders[i] + borders[i + 1]) / 2, baseline, 0);
+                    baseline -= LINE_HEIGHT;
+                }
+            }
+            content.endText();
+            y -= getRowHeight(lines);
+            pageEmpty = false;
+            content.setColorStroke(BORDER_COLOR);
+            content.setLineWidth(style.borderWidth);
+            content.moveTo(borders[0], y);
+            content.lineTo(borders[borders.length - 1], y);
+            content.stroke();
+        }
+
+        /**
+         * Method used for drawing the outer and vertical lines of the table on the current page
+         */
+        private void finish() {
+            content.setColorStroke(BORDER_COLOR);
+            content.setLineWidth(BODY.borderWidth);
+            content.rectangle(borders[0], y, borders[borders.length - 1] - borders[0], top - y);
+            for(int i = 1; i < borders.length - 1; i++) {
+                content.moveTo(borders[i], top);
+                content.lineTo(borders[i], y);
+            }
+            content.stroke();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package presentation;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Interface used for storing the generated documents, such as the bills. The documents are rendered in memory and
+ * handed to the sink whole, so a sink can be shared by several threads
+ */
+public interface DocumentSink extends Closeable {
+
+    /**
+     * Method used for storing a document
+     * @param name The name of the document, such as bill3.pdf
+     * @param content The content of the document
+     * @throws IOException If the document could not be stored
+     */
+    void write(String name, byte[] content) throws IOException;
+}
@@ -0,0 +1,33 @@
+package presentation;
+
+/**
+ * Enumeration representing the formats a report can be generated in
+ */
+public enum ExportFormat {
+    PDF(".pdf"),
+    CSV(".csv"),
+    COLUMNAR(".col");
+
+    /**
+     * The extension of the files in this format
+     */
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Method used for finding a format by name, ignoring case
+     * @param name The name of the format, as written in a REPORT command
+     * @return Returns the format, or null if there is none with that name
+     */
+    public static ExportFormat of(String name) {
+        for(ExportFormat format : values()) if(format.name().equalsIgnoreCase(name)) return format;
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+package presentation;
+
+import dao.RowHandler;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class is the base of the export sinks, which write the rows of a report as data instead of a PDF document. The
+ * rows are received from a database cursor through {@link #handle(Object[])} and encoded in a buffer, which is written
+ * to a FileChannel, optionally through gzip, whenever it fills up
+ */
+public abstract class ExportWriter implements RowHandler, Closeable {
+
+    /**
+     * The size of the buffer used for writing
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The channel of the output file, or the gzip stream over it
+     */
+    private final WritableByteChannel channel;
+    /**
+     * The buffer holding the encoded bytes not written yet
+     */
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * The constructor opens the output file
+     * @param fileName The name of the output file
+     * @param gzip True if the output is compressed with gzip
+     * @throws IOException If the file could not be created
+     */
+    protected ExportWriter(String fileName, boolean gzip) throws IOException {
+        FileChannel file = new FileOutputStream(fileName).getChannel();
+        channel = gzip ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), BUFFER_SIZE)) : file;
+    }
+
+    /**
+     * Method used for opening the export sink of a format
+     * @param format The format of the output, CSV or COLUMNAR
+     * @param fileName The name of the output file
+     * @param columns The columns of the report
+     * @param gzip True if the output is compressed with gzip
+     * @return Returns the sink
+     * @throws IOException If the file could not be created
+     * @throws IllegalArgumentException If the format is not an export format
+     */
+    public static ExportWriter open(ExportFormat format, String fileName, List<String> columns, boolean gzip) throws IOException {
+        switch (format) {
+            case CSV:
+                return new CsvExportWriter(fileName, columns, gzip);
+            case COLUMNAR:
+                return new ColumnarExportWriter(fileName, columns, gzip);
+            default:
+                throw new IllegalArgumentException("Not an export format: " + format);
+        }
+    }
+
+    /**
+     * Method used for making room in the buffer, writing its content to the file if needed
+     * @param length The number of bytes needed
+     * @throws IOException If the file could not be written
+     */
+    protected void ensure(int length) throws IOException {
+        if(buffer.remaining() >= length) return;
+        flush();
+    }
+
+    /**
+     * Method used for putting bytes in the buffer, writing the buffer whenever it fills up
+     * @param bytes The bytes to be written
+     * @throws IOException If the file could not be written
+     */
+    protected void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while(offset < bytes.length) {
+            if(!buffer.hasRemaining()) flush();
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Method used for writing the buffered bytes to the file
+     * @throws IOException If the file could not be written
+     */
+    protected void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Method used for writing the data kept by the sink before closing, such as a partial block
+     * @throws IOException If the file could not be written
+     */
+    protected void finish() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package presentation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * This class stores every document in its own file in the working directory
+ */
+public class FileDocumentSink implements DocumentSink {
+
+    @Override
+    public void write(String name, byte[] content) throws IOException {
+        Files.write(Paths.get(name), content);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,389 @@
+package presentation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class reads a text command file by parsing it on several threads. The file is memory mapped in windows, every
+ * window is split at line boundaries into chunks and the chunks are parsed by a fork-join pool. The parsed commands are
+ * handed out in the original order of the file: the chunks are joined one after the other, while the following chunks
+ * and the next window are still being parsed. A line which is not a command repeats the previous command, as in
+ * {@link Controller}
+ */
+public class ParallelCommandReader implements CommandSource {
+
+    /**
+     * Logger object used for logging possible errors
+     */
+    private static final Logger LOGGER = Logger.getLogger(ParallelCommandReader.class.getName());
+    /**
+     * The size of the mapped window of the file
+     */
+    private static final long WINDOW_SIZE = Long.getLong("shopdb.parse.window", 1L << 26);
+    /**
+     * The size of the chunks parsed by a single task
+     */
+    private static final int CHUNK_SIZE = Integer.getInteger("shopdb.parse.chunk", 1 << 20);
+    /**
+     * The pool parsing the chunks
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Integer.getInteger("shopdb.parse.threads",
+            Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The channel of the input file
+     */
+    private FileChannel channel;
+    /**
+     * The size of the input file
+     */
+    private long size;
+    /**
+     * The byte offset in the file of the end of the last window scheduled for parsing
+     */
+    private long scheduled;
+    /**
+     * The chunks scheduled for parsing, in the order of the file
+     */
+    private final Queue<ChunkTask> chunks = new ArrayDeque<>();
+    /**
+     * The parsed chunk being read
+     */
+    private Chunk current;
+    /**
+     * The index of the next command of {@link #current}
+     */
+    private int index;
+    /**
+     * The byte offset of the input right after the current command
+     */
+    private long position;
+
+    /**
+     * The type of the current command
+     */
+    private Command commandType;
+    /**
+     * The name of the client obtained from the command
+     */
+    private String clientName;
+    /**
+     * The address of the client obtained from the command
+     */
+    private String clientAddress;
+    /**
+     * The name of the product obtained from the command
+     */
+    private String productName;
+    /**
+     * The name of the table to be reported obtained from the command
+     */
+    private String reportTableName;
+    /**
+     * The ordered quantity / product quantity obtained from the command
+     */
+    private int quantity;
+    /**
+     * The price of the product obtained from the command
+     */
+    private double productPrice;
+
+    /**
+     * Method used for getting the number of threads parsing the chunks
+     * @return Returns the parallelism of the parsing pool
+     */
+    public static int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    /**
+     * The constructor starts parsing the file provided
+     * @param input The text input file with commands
+     */
+    public ParallelCommandReader(File input) {
+        this(input, 0);
+    }
+
+    /**
+     * The constructor starts parsing the file provided from the given byte offset, usually the offset saved by the last
+     * checkpoint
+     * @param input The text input file with commands
+     * @param offset The byte offset of the first command to be read
+     */
+    public ParallelCommandReader(File input, long offset) {
+        LOGGER.setLevel(Level.WARNING);
+        position = offset;
+        scheduled = offset;
+        try {
+            channel = new RandomAccessFile(input, "r").getChannel();
+            size = channel.size();
+            scheduleWindow();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be read", e);
+            channel = null;
+        }
+    }
+
+    /**
+     * Method used for mapping the next window of the file, ending at a line boundary, and scheduling its chunks for
+     * parsing
+     * @throws IOException If the file could not be mapped
+     */
+    private void scheduleWindow() throws IOException {
+        if(scheduled >= size) return;
+        long start = scheduled;
+        ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+        int end = window.limit();
+        if(start + end < size) {
+            int lastLine = lastNewLine(window, 0, end);
+            if(lastLine >= 0) end = lastLine + 1;
+        }
+        int from = 0;
+        while(from < end) {
+            int to = from + CHUNK_SIZE >= end ? end : nextLineStart(window, from + CHUNK_SIZE, end);
+            ChunkTask task = new ChunkTask(window, start, from, to);
+            POOL.execute(task);
+            chunks.add(task);
+            from = to;
+        }
+        scheduled = start + end;
+    }
+
+    /**
+     * Method used for finding the last line terminator of a range
+     * @return Returns the index of the last '\n', or -1 if there is none
+     */
+    private static int lastNewLine(ByteBuffer window, int from, int to) {
+        for(int i = to - 1; i >= from; i--) if(window.get(i) == '\n') return i;
+        return -1;
+    }
+
+    /**
+     * Method used for finding the start of the line following an index
+     * @return Returns the index right after the next '\n', or the end of the range if there is none
+     */
+    private static int nextLineStart(ByteBuffer window, int from, int to) {
+        for(int i = from; i < to; i++) if(window.get(i) == '\n') return i + 1;
+        return to;
+    }
+
+    /**
+     * Method used for checking if the input has more commands. The next chunk is awaited if needed
+     * @return Returns true if there is another command
+     */
+    @Override
+    public boolean hasNext() {
+        while(current == null || index == current.count) {
+            if(chunks.isEmpty()) {
+                if(channel == null || scheduled >= size) return false;
+                try {
+                    scheduleWindow();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "The file could not be read", e);
+                    channel = null;
+                    return false;
+                }
+                continue;
+            }
+            current = chunks.poll().join();
+            index = 0;
+            if(chunks.isEmpty() && channel != null) {
+                try {
+                    scheduleWindow();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "The file could not be read", e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method used for getting the next command. Only the arguments of the command type are taken from the parsed
+     * command, the others keep their previous value, as in {@link Controller}. A missing string argument keeps its
+     * previous value as well, and a line which is not a command keeps the whole previous command
+     */
+    @Override
+    public void readCommand() {
+        if(!hasNext()) return;
+        ParsedCommand command = current.commands[index];
+        position = current.ends[index];
+        index++;
+        if(command == null) return;
+        commandType = command.getCommandType();
+        switch (commandType) {
+            case ADD_CLIENT:
+            case DELETE_CLIENT:
+                if(command.getClientName() != null) clientName = command.getClientName();
+                if(command.getClientAddress() != null) clientAddress = command.getClientAddress();
+                break;
+            case ADD_PRODUCT:
+            case DELETE_PRODUCT:
+                if(command.getProductName() != null) productName = command.getProductName();
+                quantity = command.getQuantity();
+                productPrice = command.getProductPrice();
+                break;
+            case CREATE_ORDER:
+                if(command.getClientName() != null) clientName = command.getClientName();
+                if(command.getProductName() != null) productName = command.getProductName();
+                quantity = command.getQuantity();
+                break;
+            case GENERATE_REPORT:
+                if(command.getReportTableName() != null) reportTableName = command.getReportTableName();
+                break;
+            default:break;
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() {
+        for(ChunkTask task : chunks) task.cancel(false);
+        chunks.clear();
+        if(channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The file could not be closed", e);
+        }
+    }
+
+    @Override
+    public Command getCommandType() {
+        return commandType;
+    }
+
+    @Override
+    public String getClientName() {
+        return clientName;
+    }
+
+    @Override
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    @Override
+    public String getProductName() {
+        return productName;
+    }
+
+    @Override
+    public String getReportTableName() {
+        return reportTableName;
+    }
+
+    @Override
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public double getProductPrice() {
+        return productPrice;
+    }
+
+    /**
+     * The commands parsed from a chunk, together with the byte offset in the file right after each of them
+     */
+    private static class Chunk {
+        /**
+         * The parsed commands, null for a line which is not a command
+         */
+        private ParsedCommand[] commands = new ParsedCommand[256];
+        /**
+         * The byte offset in the file right after every command
+         */
+        private long[] ends = new long[256];
+        /**
+         * The number of parsed commands
+         */
+        private int count;
+
+        private void add(ParsedCommand command, long end) {
+            if(count == commands.length) {
+                commands = Arrays.copyOf(commands, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            commands[count] = command;
+            ends[count++] = end;
+        }
+    }
+
+    /**
+     * The task parsing the lines of a chunk
+     */
+    private static class ChunkTask extends RecursiveTask<Chunk> {
+        /**
+         * The version of the serialized form of the task
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * The mapped window holding the chunk
+         */
+        private final ByteBuffer window;
+        /**
+         * The byte offset in the file of the start of the window
+         */
+        private final long windowStart;
+        /**
+         * The index in the window of the first byte of the chunk
+         */
+        private final int from;
+        /**
+         * The index in the window right after the last byte of the chunk
+         */
+        private final int to;
+
+        private ChunkTask(ByteBuffer window, long windowStart, int from, int to) {
+            this.window = window;
+            this.windowStart = windowStart;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Chunk compute() {
+            Chunk chunk = new Chunk();
+            Controller controller = new Controller();
+            byte[] bytes = new byte[to - from];
+            ByteBuffer view = window.duplicate();
+            view.position(from);
+            view.get(bytes);
+            Charset charset = Charset.defaultCharset();
+            int lineStart = 0;
+            while(lineStart < bytes.length) {
+                int lineEnd = lineStart;
+                while(lineEnd < bytes.length && bytes[lineEnd] != '\n') lineEnd++;
+                int next = lineEnd < bytes.length ? lineEnd + 1 : lineEnd;
+                if(lineEnd > lineStart && bytes[lineEnd - 1] == '\r') lineEnd--;
+                String line = new String(bytes, lineStart, lineEnd - lineStart, charset);
+                if(!line.trim().isEmpty()) {
+                    if(controller.parse(line)) {
+                        chunk.add(ParsedCommand.of(controller), windowStart + from + next);
+                    } else {
+                        LOGGER.log(Level.WARNING, "Unknown command at byte " + (windowStart + from + lineStart) + ": " + line);
+                        chunk.add(null, windowStart + from + next);
+                    }
+                }
+                lineStart = next;
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package presentation;
+
+/**
+ * This class represents an immutable copy of a decoded command, so that commands can be handed to other threads while
+ * the source goes on decoding the next ones
+ */
+public class ParsedCommand {
+
+    /**
+     * The type of the command
+     */
+    private final Command commandType;
+    /**
+     * The name of the client
+     */
+    private final String clientName;
+    /**
+     * The address of the client
+     */
+    private final String clientAddress;
+    /**
+     * The name of the product
+     */
+    private final String productName;
+    /**
+     * The name of the table to be reported
+     */
+    private final String reportTableName;
+    /**
+     * The ordered quantity / product quantity
+     */
+    private final int quantity;
+    /**
+     * The price of the product
+     */
+    private final double productPrice;
+
+    public ParsedCommand(Command commandType, String clientName, String clientAddress, String productName,
+                         String reportTableName, int quantity, double productPrice) {
+        this.commandType = commandType;
+        this.clientName = clientName;
+        this.clientAddress = clientAddress;
+        this.productName = productName;
+        this.reportTableName = reportTableName;
+        this.quantity = quantity;
+        this.productPrice = productPrice;
+    }
+
+    /**
+     * Method used for copying the current command of a source
+     * @param source The source of the command
+     * @return Returns the copy of the command
+     */
+    public static ParsedCommand of(CommandSource source) {
+        return new ParsedCommand(source.getCommandType(), source.getClientName(), source.getClientAddress(),
+                source.getProductName(), source.getReportTableName(), source.getQuantity(), source.getProductPrice());
+    }
+
+    public Command getCommandType() {
+        return commandType;
+    }
+
+    public String getClientName() {
+        return clientName;
+    }
+
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getReportTableName() {
+        return reportTableName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getProductPrice() {
+        return productPrice;
+    }
+}
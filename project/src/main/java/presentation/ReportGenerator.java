@@ -1,24 +1,38 @@
 package presentation;
 
 import com.itextpdf.text.*;
+import com.itextpdf.text.pdf.PdfCopy;
 import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfReader;
 import com.itextpdf.text.pdf.PdfWriter;
-import dao.ClientDAO;
-import dao.ProductDAO;
-import model.Client;
 import model.order.ItemOrder;
-import model.order.Order;
 import model.Product;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +53,180 @@ public class ReportGenerator {
      * Border color of the cells
      */
     private static final BaseColor BORDER_COLOR = new BaseColor(39,65,67);
+    /**
+     * The number of rows from which a report is drawn by the {@link DirectTableRenderer} instead of a PdfPTable
+     */
+    private static final int DIRECT_RENDER_ROWS = Integer.getInteger("shopdb.report.directRows", 1000);
+    /**
+     * The number of rows from which a report is rendered in shards on several threads
+     */
+    private static final int PARALLEL_RENDER_ROWS = Integer.getInteger("shopdb.report.parallelRows", 50000);
+    /**
+     * The number of threads rendering the shards of a report
+     */
+    private static final int RENDER_THREADS = Integer.getInteger("shopdb.report.threads", Runtime.getRuntime().availableProcessors());
+    /**
+     * The threads rendering the shards of the reports, created on first use
+     */
+    private static ExecutorService renderExecutor;
+
+    /**
+     * The renderer used for the large reports
+     */
+    private final DirectTableRenderer directRenderer = new DirectTableRenderer();
+
+    /**
+     * True if the bills and the under-stock messages are appended to ZIP archives instead of separate files
+     */
+    private static final boolean ARCHIVE_DOCUMENTS = System.getProperty("shopdb.documents.sink", "files").equalsIgnoreCase("zip");
+    /**
+     * The start of the names of the archives
+     */
+    private static final String ARCHIVE_PREFIX = System.getProperty("shopdb.documents.archive", "bills");
+    /**
+     * The number of documents of an archive
+     */
+    private static final int ARCHIVE_ENTRIES = Integer.getInteger("shopdb.documents.archiveEntries", 10000);
+
+    /**
+     * True if the reports are reused while the version of their tables is unchanged
+     */
+    private static final boolean REPORT_CACHE = Boolean.parseBoolean(System.getProperty("shopdb.report.cache", "true"));
+    /**
+     * True if a reused report is hard-linked to the previous file instead of copied
+     */
+    private static final boolean REPORT_CACHE_LINKS = Boolean.getBoolean("shopdb.report.cacheLinks");
+
+    /**
+     * The last generated file of every kind of report, with the version of its tables
+     */
+    private final Map<String, CachedReport> reportCache = new ConcurrentHashMap<>();
+
+    /**
+     * The sink storing the bills and the under-stock messages
+     */
+    private final DocumentSink sink;
+
+    /**
+     * The template used for rendering the bills
+     */
+    private final BillTemplate billTemplate = new BillTemplate();
+
+    /**
+     * The constructor initializes the sink of the bills
+     */
+    public ReportGenerator() {
+        this.sink = createSink();
+    }
+
+    /**
+     * Method used for creating the sink of the bills, as configured by the shopdb.documents.sink system property
+     * @return Returns a {@link ZipDocumentSink} if archives are enabled and could be created, a
+     * {@link FileDocumentSink} otherwise
+     */
+    private static DocumentSink createSink() {
+        if(ARCHIVE_DOCUMENTS) {
+            try {
+                return new ZipDocumentSink(ARCHIVE_PREFIX, ARCHIVE_ENTRIES);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "The archive index could not be created, the bills are written as files", e);
+            }
+        }
+        return new FileDocumentSink();
+    }
+
+    /**
+     * Method used for reusing the last generated file of a kind of report, if the version of its tables did not change
+     * since. The file is copied, or hard-linked if enabled, to the name of the new report
+     * @param key The kind of report, such as "product PDF"
+     * @param version The current version of the tables of the report
+     * @param reportName The name of the new report
+     * @return Returns true if the previous file was reused
+     */
+    public boolean reuseReport(String key, long version, String reportName) {
+        if(!REPORT_CACHE) return false;
+        CachedReport cached = reportCache.get(key);
+        if(cached == null || cached.version != version) return false;
+        Path source = Paths.get(cached.fileName);
+        Path target = Paths.get(reportName);
+        if(source.toAbsolutePath().equals(target.toAbsolutePath())) return Files.exists(source);
+        try {
+            if(REPORT_CACHE_LINKS) {
+                Files.deleteIfExists(target);
+                Files.createLink(target, source);
+            } else {
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.WARNING, "The report " + cached.fileName + " could not be reused", e);
+            reportCache.remove(key, cached);
+            return false;
+        }
+    }
+
+    /**
+     * Method used for remembering the file of a generated report, so it can be reused by the next report of the same
+     * kind
+     * @param key The kind of report, such as "product PDF"
+     * @param version The version of the tables of the report, read before the rows
+     * @param reportName The name of the generated report
+     */
+    public void cacheReport(String key, long version, String reportName) {
+        if(REPORT_CACHE) reportCache.put(key, new CachedReport(version, reportName));
+    }
+
+    /**
+     * Method used for closing the sink of the bills, finishing the archive being written
+     */
+    public void close() {
+        try {
+            sink.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The documents could not be stored", e);
+        }
+    }
+
+    /**
+     * Method used for warming up iText: a document with a paragraph and a table is rendered in memory, so the fonts and
+     * the layout classes are loaded before the first bill or report
+     */
+    public void warmUp() {
+        Document document = new Document();
+        try {
+            PdfWriter.getInstance(document, new ByteArrayOutputStream());
+            document.open();
+            document.add(new Paragraph("Warm up"));
+            PdfPTable table = new PdfPTable(1);
+            ArrayList<String> columns = new ArrayList<>();
+            columns.add("Warm up");
+            addTableHeader(table, columns);
+            table.addCell(getCell("Warm up"));
+            document.add(table);
+        } catch (DocumentException e) {
+            LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
+        }
+        document.close();
+    }
+
+    /**
+     * A generated report file and the version of the tables it was generated from
+     */
+    private static class CachedReport {
+        /**
+         * The version of the tables of the report
+         */
+        private final long version;
+        /**
+         * The name of the report file
+         */
+        private final String fileName;
+
+        private CachedReport(long version, String fileName) {
+            this.version = version;
+            this.fileName = fileName;
+        }
+    }
 
     /**
      * Method used for adding headers to a table
@@ -78,28 +266,19 @@ public class ReportGenerator {
     }
 
     /**
-     * Method used for generating bills
+     * Method used for generating bills from the {@link BillTemplate}
      * @param billName The name of the document to be generated
-     * @param order The order used for generating the bill
+     * @param clientName The name of the client of the order
+     * @param product The ordered product, with the price used for the order
      * @param itemOrder The item order used for generating the bill
      */
-    public void generateBill(String billName, Order order, ItemOrder itemOrder) {
-        Document document = openAndGetDocument(billName);
-        int clientPK = order.getClientId();
-        ClientDAO clientDAO = new ClientDAO();
-        Client client = clientDAO.findByPK(clientPK);
-        ProductDAO productDAO = new ProductDAO();
-        Product product = productDAO.findByPK(itemOrder.getProductId());
+    public void generateBill(String billName, String clientName, Product product, ItemOrder itemOrder) {
+        byte[] content = billTemplate.render(clientName, product.getProductName(), product.getPrice(), itemOrder.getQuantity());
         try {
-            document.add(new Paragraph("Client name: " + client.getName()));
-            document.add(new Paragraph("Product: " + product.getProductName()));
-            document.add(new Paragraph("Product price: " + product.getPrice()));
-            document.add(new Paragraph("Quantity: " + itemOrder.getQuantity()));
-            document.add(new Paragraph("Total: " + (itemOrder.getQuantity() * product.getPrice())));
-        } catch (DocumentException e) {
-            LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
+            sink.write(billName, content);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The document " + billName + " could not be stored", e);
         }
-        document.close();
     }
 
     /**
@@ -109,7 +288,8 @@ public class ReportGenerator {
      * @param orderedQuantity The ordered quantity used for generating the message
      */
     public void generateUnderStock(String underStockName, Product product, Integer orderedQuantity) {
-        Document document = openAndGetDocument(underStockName);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Document document = openAndGetDocument(content);
         try {
             Paragraph p = new Paragraph("The operation could not be performed (under-stock): ");
             p.getFont().setColor(BaseColor.RED);
@@ -121,12 +301,26 @@ public class ReportGenerator {
             LOGGER.log(Level.WARNING, "Exception occur", e);
         }
         document.close();
+        store(underStockName, content);
+    }
+
+    /**
+     * Method used for handing a document rendered in memory to the sink
+     * @param name The name of the document
+     * @param content The content of the document
+     */
+    private void store(String name, ByteArrayOutputStream content) {
+        try {
+            sink.write(name, content.toByteArray());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The document " + name + " could not be stored", e);
+        }
     }
 
     /**
      * Method used for opening a new document
      * @param fileName The filename to be used
-     * @return Returns the opened document
+     * @return Returns the opened document, or null if the file could not be opened
      */
     private Document openAndGetDocument(String fileName) {
         Document document = new Document();
@@ -134,6 +328,24 @@ public class ReportGenerator {
             PdfWriter.getInstance(document, new FileOutputStream(fileName));
         } catch (FileNotFoundException e) {
             LOGGER.log(Level.WARNING, "The file could not be found", e);
+            return null;
+        } catch (DocumentException e) {
+            LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
+            return null;
+        }
+        document.open();
+        return document;
+    }
+
+    /**
+     * Method used for opening a new document written in a stream
+     * @param output The stream receiving the document
+     * @return Returns the opened document
+     */
+    private Document openAndGetDocument(OutputStream output) {
+        Document document = new Document();
+        try {
+            PdfWriter.getInstance(document, output);
         } catch (DocumentException e) {
             LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
         }
@@ -172,22 +384,126 @@ public class ReportGenerator {
     }
 
     /**
-     * Method used for generating reports
+     * Method used for generating reports. The reports with at least {@link #DIRECT_RENDER_ROWS} rows are drawn by the
+     * {@link DirectTableRenderer}, unless its font could not be loaded
+     * @param reportName The report name to be generated
+     * @param rows The rows of the generated document
+     * @param columns The columns of the generated document
+     * @return Returns true if the report was written
+     */
+    public boolean generateReport(String reportName, ArrayList<?> rows, ArrayList<String> columns) {
+        if(!directRenderer.isAvailable()) return generateTableReport(reportName, rows, columns);
+        if(RENDER_THREADS > 1 && rows.size() >= PARALLEL_RENDER_ROWS) return generateShardedReport(reportName, rows, columns, RENDER_THREADS);
+        if(rows.size() >= DIRECT_RENDER_ROWS) return directRenderer.render(reportName, rows, columns);
+        return generateTableReport(reportName, rows, columns);
+    }
+
+    /**
+     * Method used for getting the threads rendering the shards of the reports
+     * @return Returns the executor
+     */
+    private static synchronized ExecutorService getRenderExecutor() {
+        if(renderExecutor == null) {
+            renderExecutor = Executors.newFixedThreadPool(Math.max(1, RENDER_THREADS), runnable -> {
+                Thread thread = new Thread(runnable, "report-render");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return renderExecutor;
+    }
+
+    /**
+     * Method used for generating a report in shards: the rows are split in ranges of whole pages, every range is drawn
+     * by the {@link DirectTableRenderer} in a temporary file on its own thread, with the column widths of the whole
+     * report, and the temporary files are concatenated in order into the report
+     * @param reportName The report name to be generated
+     * @param rows The rows of the generated document
+     * @param columns The columns of the generated document
+     * @param shardCount The number of shards
+     * @return Returns true if the report was written
+     */
+    boolean generateShardedReport(String reportName, ArrayList<?> rows, ArrayList<String> columns, int shardCount) {
+        float[] widths = directRenderer.computeWidths(rows, columns);
+        int[] pageStarts = directRenderer.getPageStarts(rows, columns, widths);
+        int shardPages = (pageStarts.length + shardCount - 1) / shardCount;
+        List<File> shards = new ArrayList<>();
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for(int page = 0; page < pageStarts.length; page += shardPages) {
+                int to = page + shardPages < pageStarts.length ? pageStarts[page + shardPages] : rows.size();
+                List<?> part = rows.subList(pageStarts[page], to);
+                File shard = File.createTempFile("report", ".pdf");
+                shards.add(shard);
+                results.add(getRenderExecutor().submit(() -> {
+                    try (OutputStream output = new BufferedOutputStream(new FileOutputStream(shard), 1 << 16)) {
+                        if(!directRenderer.render(output, part, columns, widths)) throw new IOException("The part could not be drawn");
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> result : results) result.get();
+            mergeShards(reportName, shards);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The report could not be written", e);
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "A part of the report could not be written", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Interrupted while rendering the report", e);
+        } catch (DocumentException e) {
+            LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
+        } finally {
+            for(File shard : shards) if(!shard.delete()) shard.deleteOnExit();
+        }
+        return false;
+    }
+
+    /**
+     * Method used for concatenating the pages of the shards of a report
+     * @param reportName The report name to be generated
+     * @param shards The shards, in order
+     * @throws IOException If a shard could not be read or the report could not be written
+     * @throws DocumentException If the report could not be assembled
+     */
+    private void mergeShards(String reportName, List<File> shards) throws IOException, DocumentException {
+        Document document = new Document();
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(reportName), 1 << 16)) {
+            PdfCopy copy = new PdfCopy(document, output);
+            document.open();
+            for(File shard : shards) {
+                PdfReader reader = new PdfReader(shard.getPath());
+                for(int page = 1; page <= reader.getNumberOfPages(); page++) copy.addPage(copy.getImportedPage(reader, page));
+                copy.freeReader(reader);
+                reader.close();
+            }
+            document.close();
+        }
+    }
+
+    /**
+     * Method used for generating reports laid out through a PdfPTable
      * @param reportName The report name to be generated
      * @param rows The rows of the generated document
      * @param columns The columns of the generated document
+     * @return Returns true if the report was written
      */
-    public void generateReport(String reportName, ArrayList<?> rows, ArrayList<String> columns) {
+    boolean generateTableReport(String reportName, ArrayList<?> rows, ArrayList<String> columns) {
         Document document = openAndGetDocument(reportName);
+        if(document == null) return false;
         PdfPTable table = new PdfPTable(columns.size());
         addTableHeader(table, columns);
         insertRows(table, rows);
+        boolean written = true;
         try {
             document.add(table);
         } catch (DocumentException e) {
             LOGGER.log(Level.WARNING, "An error has occurred in a document", e);
+            written = false;
         }
         document.close();
+        return written;
     }
 
 }
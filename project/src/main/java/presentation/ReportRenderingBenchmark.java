@@ -0,0 +1,58 @@
+package presentation;
+
+import model.Product;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+/**
+ * Benchmark comparing the reports laid out through a PdfPTable with the reports drawn by {@link DirectTableRenderer},
+ * on one thread and in shards on several threads. Usage: ReportRenderingBenchmark [row counts separated by commas]
+ * [largest row count rendered through PdfPTable] [number of shards]
+ */
+public class ReportRenderingBenchmark {
+
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        String[] sizes = (args.length > 0 ? args[0] : "10000,100000,1000000").split(",");
+        int tableLimit = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int shards = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        ArrayList<String> columns = new ArrayList<>();
+        columns.add("id");
+        columns.add("productName");
+        columns.add("quantity");
+        columns.add("price");
+        ReportGenerator generator = new ReportGenerator();
+        DirectTableRenderer renderer = new DirectTableRenderer();
+        Method setPK = Product.class.getDeclaredMethod("setPK", Integer.class);
+        setPK.setAccessible(true);
+        File output = File.createTempFile("report", ".pdf");
+        output.deleteOnExit();
+        for(String size : sizes) {
+            int count = Integer.parseInt(size.trim());
+            ArrayList<Product> rows = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                Product product = new Product();
+                setPK.invoke(product, i + 1);
+                product.setProductName("product" + i);
+                product.setQuantity(i % 1000);
+                product.setPrice(i % 100 + 0.99);
+                rows.add(product);
+            }
+            String table = "skipped";
+            if(count <= tableLimit) {
+                long start = System.nanoTime();
+                generator.generateTableReport(output.getPath(), rows, columns);
+                table = String.format("%.1f ms, %d bytes", (System.nanoTime() - start) / 1e6, output.length());
+            }
+            long start = System.nanoTime();
+            renderer.render(output.getPath(), rows, columns);
+            String direct = String.format("%.1f ms, %d bytes", (System.nanoTime() - start) / 1e6, output.length());
+            start = System.nanoTime();
+            generator.generateShardedReport(output.getPath(), rows, columns, shards);
+            String sharded = String.format("%.1f ms, %d bytes", (System.nanoTime() - start) / 1e6, output.length());
+            System.out.printf("%d rows: PdfPTable %s, direct %s, %d shards %s%n", count, table, direct, shards, sharded);
+        }
+    }
+}
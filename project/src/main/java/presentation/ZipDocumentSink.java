@@ -0,0 +1,112 @@
+package presentation;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This class appends the documents to rolling ZIP archives named prefix-run-N.zip, written sequentially through a large
+ * buffer, instead of creating a file per document. An archive is closed and the next one started after a fixed number
+ * of entries. The documents are stored without compression, since the content of the PDF files is already compressed.
+ * Every finished archive is recorded in the index file prefix-run.index, with one line per document: the name of the
+ * document, the name of the archive and the name of the entry, separated by tabs. The documents of an archive which was
+ * not finished, for example because the application was stopped, are not in the index
+ */
+public class ZipDocumentSink implements DocumentSink {
+
+    /**
+     * The size of the buffer used for writing an archive
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The start of the names of the archives and of the index file
+     */
+    private final String baseName;
+    /**
+     * The number of documents of an archive
+     */
+    private final int maxEntries;
+    /**
+     * The index file
+     */
+    private final Writer index;
+    /**
+     * The archive being written, null until the first document
+     */
+    private ZipOutputStream archive;
+    /**
+     * The name of the archive being written
+     */
+    private String archiveName;
+    /**
+     * The number of the archive being written
+     */
+    private int archiveCount;
+    /**
+     * The names of the documents of the archive being written
+     */
+    private final List<String> entries = new ArrayList<>();
+
+    /**
+     * The constructor creates the index file. The archives are created when the documents arrive
+     * @param prefix The start of the names of the archives
+     * @param maxEntries The number of documents of an archive
+     * @throws IOException If the index file could not be created
+     */
+    public ZipDocumentSink(String prefix, int maxEntries) throws IOException {
+        this.baseName = prefix + "-" + System.currentTimeMillis();
+        this.maxEntries = Math.max(1, maxEntries);
+        index = new OutputStreamWriter(new FileOutputStream(baseName + ".index"), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void write(String name, byte[] content) throws IOException {
+        if(archive == null) {
+            archiveName = baseName + "-" + (++archiveCount) + ".zip";
+            archive = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archiveName), BUFFER_SIZE));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        archive.putNextEntry(entry);
+        archive.write(content);
+        archive.closeEntry();
+        entries.add(name);
+        if(entries.size() == maxEntries) finishArchive();
+    }
+
+    /**
+     * Method used for closing the archive being written and recording its documents in the index
+     * @throws IOException If the archive or the index could not be written
+     */
+    private void finishArchive() throws IOException {
+        if(archive == null) return;
+        archive.close();
+        archive = null;
+        for(String entry : entries) index.write(entry + "\t" + archiveName + "\t" + entry + "\n");
+        index.flush();
+        entries.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            finishArchive();
+        } finally {
+            index.close();
+        }
+    }
+}
@@ -29,6 +29,7 @@ CREATE TABLE `itemorders` (
   `quantity` int NOT NULL,
   PRIMARY KEY (`id`),
   KEY `orderId` (`orderId`),
+  KEY `productId` (`productId`),
   CONSTRAINT `itemorders_ibfk_1` FOREIGN KEY (`orderId`) REFERENCES `orders` (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=3 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
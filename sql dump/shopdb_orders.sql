@@ -26,7 +26,8 @@ CREATE TABLE `orders` (
   `id` int NOT NULL AUTO_INCREMENT,
   `clientId` int NOT NULL,
   `total` double NOT NULL DEFAULT '0',
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `clientId` (`clientId`)
 ) ENGINE=InnoDB AUTO_INCREMENT=3 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
 